@@ -0,0 +1,106 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import processing.ExecutionStrategy;
+import processing.FilterChain;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageProcessor;
+import processing.KernelMode;
+import processing.PixelPool;
+import processing.Progress;
+import processing.StrategyType;
+import processing.TileScheduler;
+
+/**
+ * Filtering with the result leased from PixelPool and released after every operation, as the
+ * batch and server paths do. Once warmed up the pool serves every buffer, so the only
+ * allocation left is per operation and per band, never per pixel. BenchmarkRunner fails the
+ * run when gc.alloc.rate.norm divided by the pixels per operation exceeds MAX_BYTES_PER_PIXEL.
+ * VirtualThreads is left out: virtual threads don't report allocation, so the profiler would
+ * see nothing to check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AllocationBenchmark {
+    static final double MAX_BYTES_PER_PIXEL = 0.01;
+
+    @Param({"grayscale", "blur:4", "edge_detection", "grayscale,blur:4,edge_detection"})
+    public String chain;
+
+    @Param({"SEQUENTIAL", "EXECUTOR_SERVICE", "FORK_JOIN", "PARALLEL_STREAM"})
+    public StrategyType strategy;
+
+    @Param({"4"})
+    public int threads;
+
+    @Param({"4"})
+    public double megapixels;
+
+    @Param({"bands", "auto"})
+    public String tiles;
+
+    private ImageBuffer image;
+    private List<ImageProcessor> passes;
+    private ExecutionStrategy executionStrategy;
+    private TileScheduler scheduler;
+    private PixelPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        passes = FilterChain.parse(chain).passes(KernelMode.SCALAR);
+        executionStrategy = strategy.create(threads);
+        scheduler = TileScheduler.parse(tiles);
+        pool = PixelPool.shared();
+    }
+
+    @Benchmark
+    public ImageBuffer filter() throws Exception {
+        ImageBuffer result = ImageEngine.apply(image, passes, executionStrategy, scheduler, Progress.NONE, pool);
+        pool.release(result);
+        return result;
+    }
+
+    /** One line per result of this benchmark that allocated more than MAX_BYTES_PER_PIXEL. */
+    static List<String> violations(Collection<RunResult> results) {
+        List<String> violations = new ArrayList<>();
+        for (RunResult run : results) {
+            if (!run.getParams().getBenchmark().startsWith(AllocationBenchmark.class.getName() + ".")) continue;
+            Result<?> norm = run.getSecondaryResults().get("gc.alloc.rate.norm");
+            if (norm == null || Double.isNaN(norm.getScore())) continue;
+            double pixels = Double.parseDouble(run.getParams().getParam("megapixels")) * 1e6;
+            double perPixel = norm.getScore() / pixels;
+            if (perPixel > MAX_BYTES_PER_PIXEL) {
+                StringBuilder params = new StringBuilder();
+                for (String key : run.getParams().getParamsKeys()) {
+                    params.append(' ').append(key).append('=').append(run.getParams().getParam(key));
+                }
+                violations.add(String.format("%s%s: %.4f bytes allocated per pixel, limit %.2f",
+                    run.getParams().getBenchmark(), params, perPixel, MAX_BYTES_PER_PIXEL));
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,97 @@
+package bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import batch.BatchPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.FilterChain;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageFiles;
+import processing.KernelMode;
+import processing.StrategyType;
+import processing.TileScheduler;
+import processing.WriteOptions;
+
+/**
+ * A whole batch from PNG files on disk to PNG files on disk. {@code stages} is the staged
+ * pipeline (decode, filter and encode pools) filtering with ExecutorService; {@code virtual}
+ * gives every image its own virtual thread and filters with VirtualThreads under one shared
+ * budget of {@code threads} permits. Many small images favour the virtual pipeline, whose I/O
+ * isn't capped by the I/O pool size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BatchBenchmark {
+    @Param({"stages", "virtual"})
+    public String pipeline;
+
+    @Param({"4", "8"})
+    public int threads;
+
+    @Param({"32"})
+    public int images;
+
+    @Param({"1"})
+    public double megapixels;
+
+    @Param({"BLUR"})
+    public FilterType filter;
+
+    private Path dir;
+    private List<BatchPipeline.Job> jobs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("batch-bench");
+        Path out = Files.createDirectory(dir.resolve("out"));
+        jobs = new ArrayList<>();
+        for (int i = 0; i < images; i++) {
+            Path source = dir.resolve("in-" + i + ".png");
+            ImageFiles.write(SyntheticImages.ofMegapixels(megapixels), "png", source);
+            jobs.add(new BatchPipeline.Job(source, out.resolve("in-" + i + ".png")));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (var files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public int batch() throws Exception {
+        boolean virtual = pipeline.equals("virtual");
+        BatchPipeline run = new BatchPipeline(FilterChain.of(filter, FilterOptions.DEFAULT), KernelMode.SCALAR,
+            virtual ? StrategyType.VIRTUAL_THREADS : StrategyType.EXECUTOR_SERVICE, TileScheduler.rowBands(),
+            threads, 2, "png", WriteOptions.DEFAULT, null, null);
+        if (virtual) {
+            run.runVirtual(jobs);
+        } else {
+            run.run(jobs);
+        }
+        if (run.getFailed() > 0) throw new IllegalStateException(run.getFailed() + " image(s) failed");
+        return run.getSucceeded();
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.StrategyType;
+
+/** Blur time per image across radii; with running sums it should stay flat as the radius grows. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BlurRadiusBenchmark {
+    @Param({"1", "5", "20", "50"})
+    public int radius;
+
+    @Param({"SEQUENTIAL", "FORK_JOIN"})
+    public StrategyType strategy;
+
+    @Param({"10"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private FilterOptions options;
+    private ExecutionStrategy executionStrategy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        options = new FilterOptions(radius);
+        executionStrategy = strategy.create(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public ImageBuffer blur() throws Exception {
+        return ImageEngine.apply(image, FilterType.BLUR, options, executionStrategy);
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterChain;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageProcessor;
+import processing.KernelMode;
+import processing.Kernels;
+import processing.StrategyType;
+
+/**
+ * A filter chain run as one fused pass over tiles against the same stages run one full image
+ * at a time. The GC profiler shows the full-size intermediates the fused pass avoids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ChainBenchmark {
+    // Stages joined with "+", since JMH splits -p values on commas
+    @Param({"grayscale+blur:3+edge_detection", "grayscale+edge_detection"})
+    public String chain;
+
+    @Param({"FORK_JOIN", "SEQUENTIAL"})
+    public StrategyType strategy;
+
+    @Param({"24"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private ExecutionStrategy executionStrategy;
+    private List<ImageProcessor> fused;
+    private List<ImageProcessor> separate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        executionStrategy = strategy.create(Runtime.getRuntime().availableProcessors());
+        FilterChain filterChain = FilterChain.parse(chain.replace('+', ','));
+        fused = filterChain.passes(KernelMode.SCALAR);
+        separate = new ArrayList<>();
+        for (FilterChain.Stage stage : filterChain.stages()) {
+            separate.addAll(Kernels.passes(stage.filter(), stage.options(), KernelMode.SCALAR));
+        }
+    }
+
+    @Benchmark
+    public ImageBuffer fused() throws Exception {
+        return ImageEngine.apply(image, fused, executionStrategy);
+    }
+
+    @Benchmark
+    public ImageBuffer separatePasses() throws Exception {
+        return ImageEngine.apply(image, separate, executionStrategy);
+    }
+}
@@ -0,0 +1,98 @@
+package bench;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.ImageBuffer;
+import processing.ImageFiles;
+import processing.StrategyType;
+import processing.WriteOptions;
+
+/**
+ * Decode and encode time against thread count. {@code imageIoPng} is ImageIO's single-threaded
+ * PNG writer at the same deflate level, for reference; BMP decodes by region in parallel, PNG
+ * decodes on one thread and converts to ARGB in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CodecBenchmark {
+    @Param({"1", "4", "8"})
+    public int threads;
+
+    @Param({"24"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private ExecutionStrategy strategy;
+    private Path dir;
+    private Path png;
+    private Path bmp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        strategy = threads == 1
+            ? StrategyType.SEQUENTIAL.create(1)
+            : StrategyType.FORK_JOIN.create(threads);
+        dir = Files.createTempDirectory("codec-bench");
+        png = dir.resolve("in.png");
+        bmp = dir.resolve("in.bmp");
+        ImageFiles.write(image, "png", png);
+        ImageFiles.write(image, "bmp", bmp);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public Object decodePng() throws Exception {
+        return ImageFiles.read(png, strategy);
+    }
+
+    @Benchmark
+    public Object decodeBmp() throws Exception {
+        return ImageFiles.read(bmp, strategy);
+    }
+
+    @Benchmark
+    public long encodePng() throws Exception {
+        Path out = dir.resolve("out.png");
+        ImageFiles.write(image, "png", out, WriteOptions.DEFAULT, strategy);
+        return Files.size(out);
+    }
+
+    @Benchmark
+    public long imageIoPng() throws Exception {
+        Path out = dir.resolve("imageio.png");
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(out), 1 << 16)) {
+            ImageIO.write(image.toBufferedImage(), "png", os);
+        }
+        return Files.size(out);
+    }
+}
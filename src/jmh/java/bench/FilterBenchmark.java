@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.StrategyType;
+
+/**
+ * Every FilterType under every strategy, thread count and image size. The "megapixels"
+ * secondary result is the throughput in MP/s; run with the default BenchmarkRunner (or
+ * -prof gc) to get allocation rates next to it. The matrix is large, so narrow it with -p,
+ * e.g. -p filter=BLUR -p megapixels=40.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class FilterBenchmark {
+    @Param({"GRAYSCALE", "BLUR", "EDGE_DETECTION"})
+    public FilterType filter;
+
+    @Param({"SEQUENTIAL", "EXECUTOR_SERVICE", "FORK_JOIN", "PARALLEL_STREAM", "VIRTUAL_THREADS"})
+    public StrategyType strategy;
+
+    // ignored by SEQUENTIAL
+    @Param({"1", "4", "8", "16"})
+    public int threads;
+
+    @Param({"1", "10", "40", "100"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private ExecutionStrategy executionStrategy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        executionStrategy = strategy.create(threads);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Pixels {
+        public double megapixels;
+    }
+
+    @Benchmark
+    public ImageBuffer filter(Pixels counter) throws Exception {
+        ImageBuffer result = ImageEngine.apply(image, filter, executionStrategy);
+        counter.megapixels += image.getWidth() * (double) image.getHeight() / 1e6;
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageProcessor;
+import processing.KernelMode;
+import processing.Kernels;
+import processing.StrategyType;
+
+/**
+ * Scalar vs Vector API kernels, single-threaded and parallel. Setup refuses to run if the
+ * SIMD module is missing or if the SIMD output differs from scalar in any pixel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules=jdk.incubator.vector"})
+public class SimdBenchmark {
+    @Param({"GRAYSCALE", "BLUR", "EDGE_DETECTION"})
+    public FilterType filter;
+
+    @Param({"SCALAR", "SIMD"})
+    public KernelMode mode;
+
+    @Param({"SEQUENTIAL", "FORK_JOIN"})
+    public StrategyType strategy;
+
+    @Param({"10"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private List<ImageProcessor> passes;
+    private ExecutionStrategy executionStrategy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if (!Kernels.isSimdAvailable()) {
+            throw new IllegalStateException("Vector API unavailable in the benchmark JVM");
+        }
+        image = SyntheticImages.ofMegapixels(megapixels);
+        passes = Kernels.passes(filter, FilterOptions.DEFAULT, mode);
+        executionStrategy = strategy.create(Runtime.getRuntime().availableProcessors());
+        ImageBuffer expected = ImageEngine.apply(image, Kernels.passes(filter, FilterOptions.DEFAULT, KernelMode.SCALAR), executionStrategy);
+        ImageBuffer actual = ImageEngine.apply(image, passes, executionStrategy);
+        if (!Arrays.equals(expected.getPixels(), actual.getPixels())) {
+            throw new IllegalStateException(mode + " " + filter + " output differs from scalar");
+        }
+    }
+
+    @Benchmark
+    public ImageBuffer filter() throws Exception {
+        return ImageEngine.apply(image, passes, executionStrategy);
+    }
+}
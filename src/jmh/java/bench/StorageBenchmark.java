@@ -0,0 +1,81 @@
+package bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageProcessor;
+import processing.Kernels;
+import processing.OffHeapImage;
+import processing.StrategyType;
+import processing.TileScheduler;
+
+/**
+ * Heap ImageBuffer vs off-heap storage streamed in strips. Compare gc.alloc.rate.norm: once the
+ * image is bigger than a strip, off-heap runs allocate only the two strip windows (32 MB), not a
+ * full-frame result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:MaxDirectMemorySize=4g"})
+public class StorageBenchmark {
+    @Param({"HEAP", "DIRECT", "MAPPED"})
+    public String storage;
+
+    @Param({"GRAYSCALE", "BLUR"})
+    public FilterType filter;
+
+    @Param({"40"})
+    public double megapixels;
+
+    private ImageBuffer image;
+    private OffHeapImage offHeap;
+    private List<ImageProcessor> passes;
+    private ExecutionStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        image = SyntheticImages.ofMegapixels(megapixels);
+        if (!storage.equals("HEAP")) {
+            offHeap = OffHeapImage.allocate(OffHeapImage.Kind.valueOf(storage), image.getWidth(), image.getHeight(), null);
+            offHeap.writeRows(0, image.getHeight(), image.getPixels(), 0);
+            image = null;
+        }
+        passes = Kernels.passes(filter);
+        strategy = StrategyType.FORK_JOIN.create(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (offHeap != null) offHeap.close();
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        if (offHeap == null) {
+            return ImageEngine.apply(image, passes, strategy);
+        }
+        // Closing releases the result right away, as a batch run would after encoding
+        try (OffHeapImage result = ImageEngine.apply(offHeap, passes, strategy, TileScheduler.rowBands())) {
+            return result.getWidth();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package bench;
+
+import java.util.SplittableRandom;
+import processing.ImageBuffer;
+
+/** Deterministic 4:3 test images so every run and every machine filters the same pixels. */
+final class SyntheticImages {
+    private SyntheticImages() {}
+
+    static ImageBuffer ofMegapixels(double megapixels) {
+        long pixels = Math.round(megapixels * 1_000_000);
+        int width = (int) Math.round(Math.sqrt(pixels * 4.0 / 3.0));
+        int height = (int) Math.max(1, pixels / width);
+        return create(width, height, 42);
+    }
+
+    static ImageBuffer create(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // gradient plus noise gives the edge kernel real work and defeats value caching
+                int r = ((x * 255) / width + random.nextInt(32)) & 0xff;
+                int g = ((y * 255) / height + random.nextInt(32)) & 0xff;
+                int b = random.nextInt(256);
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return new ImageBuffer(width, height, pixels);
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processing.ExecutionStrategy;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.StrategyType;
+import processing.TileScheduler;
+
+/** Row bands against 2D tiles on a wide panorama, where one row is larger than L2. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TilingBenchmark {
+    @Param({"EDGE_DETECTION", "BLUR"})
+    public FilterType filter;
+
+    @Param({"FORK_JOIN", "EXECUTOR_SERVICE"})
+    public StrategyType strategy;
+
+    @Param({"bands", "auto", "512x64"})
+    public String tiles;
+
+    @Param({"120000"})
+    public int width;
+
+    @Param({"300"})
+    public int height;
+
+    private ImageBuffer image;
+    private ExecutionStrategy executionStrategy;
+    private TileScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = SyntheticImages.create(width, height, 7);
+        executionStrategy = strategy.create(Runtime.getRuntime().availableProcessors());
+        scheduler = TileScheduler.parse(tiles);
+    }
+
+    @Benchmark
+    public ImageBuffer filter() throws Exception {
+        return ImageEngine.apply(image, filter, FilterOptions.DEFAULT, executionStrategy, scheduler);
+    }
+}
@@ -0,0 +1,255 @@
+package batch;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+import processing.FilterChain;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.KernelMode;
+import processing.Kernels;
+import processing.Metrics;
+import processing.OffHeapImage;
+import processing.StreamingProcessor;
+import processing.SplitCalibration;
+import processing.StrategyType;
+import processing.TileScheduler;
+import processing.WorkerPools;
+import processing.WriteOptions;
+
+/**
+ * Headless command-line entry point for processing a directory (or glob) of images.
+ * Needs no display and no JavaFX runtime.
+ */
+public final class BatchMain {
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "bmp", "gif");
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: batch.BatchMain <input-dir | glob> [options]",
+        "       batch.BatchMain --calibrate",
+        "  -f, --filter <name>     GRAYSCALE, BLUR or EDGE_DETECTION (default GRAYSCALE)",
+        "  -r, --radius <px>       blur radius, 1-100 (default 2)",
+        "      --chain <stages>    run several filters fused into one pass, e.g. grayscale,blur:4,edge_detection",
+        "                          (replaces -f and -r)",
+        "  -s, --strategy <name>   Sequential, ExecutorService, ForkJoin, ParallelStream,",
+        "                          VirtualThreads, or auto to pick per image (default ForkJoin)",
+        "  -t, --threads <n>       worker threads (default: available processors)",
+        "      --simd              use the Vector API kernels (needs --add-modules jdk.incubator.vector;",
+        "                          falls back to scalar without it)",
+        "      --tiles <layout>    bands (full-width row bands), auto, or WxH 2D tiles (default bands)",
+        "  -o, --output <dir>      output directory (default: <input-dir>/processed)",
+        "      --format <fmt>      png or jpg (default png)",
+        "      --png-level <0-9>   PNG deflate level, 0 stores uncompressed (default 4)",
+        "      --jpeg-quality <q>  JPEG quality above 0 up to 1 (default 0.75)",
+        "      --io-threads <n>    decode and encode threads per stage (default 2)",
+        "      --pipeline <kind>   stages (decode, filter and encode pools) or virtual (one virtual",
+        "                          thread per image, filtering with VirtualThreads) (default stages)",
+        "      --storage <kind>    heap, direct (native memory) or mapped (scratch file, bounded by disk)",
+        "                          (default heap)",
+        "      --scratch <dir>     directory for mapped scratch files (default: java.io.tmpdir)",
+        "      --stream            decode, filter and encode in row strips; memory grows with width,",
+        "                          not height (png or jpg output)",
+        "      --strip-rows <n>    rows per strip when streaming (default: about 4 MP per strip)",
+        "      --metrics <file>    write stage timings, worker busy time and allocation as JSON,",
+        "                          or CSV when the file name ends in .csv (not with --stream)");
+
+    private BatchMain() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args[0].equals("-h") || args[0].equals("--help")) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (args[0].equals("--calibrate")) {
+            calibrate();
+            return;
+        }
+        String input = null;
+        FilterType filter = FilterType.GRAYSCALE;
+        FilterOptions options = FilterOptions.DEFAULT;
+        FilterChain chain = null;
+        KernelMode mode = KernelMode.SCALAR;
+        StrategyType strategy = StrategyType.FORK_JOIN;
+        boolean strategyGiven = false;
+        boolean virtual = false;
+        TileScheduler scheduler = TileScheduler.rowBands();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = 2;
+        Path output = null;
+        String format = "png";
+        int pngLevel = WriteOptions.DEFAULT.pngLevel();
+        float jpegQuality = WriteOptions.DEFAULT.jpegQuality();
+        OffHeapImage.Kind storage = null;
+        Path scratchDir = null;
+        boolean stream = false;
+        int stripRows = 0;
+        Path metricsFile = null;
+        WriteOptions writeOptions;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-f", "--filter" -> filter = FilterType.valueOf(args[++i].toUpperCase(Locale.ROOT).replace(' ', '_'));
+                    case "-r", "--radius" -> options = new FilterOptions(Integer.parseInt(args[++i]));
+                    case "--chain" -> chain = FilterChain.parse(args[++i]);
+                    case "-s", "--strategy" -> {
+                        String name = args[++i];
+                        strategy = name.equalsIgnoreCase("auto") ? null : StrategyType.fromLabel(name);
+                        strategyGiven = true;
+                    }
+                    case "--simd" -> mode = KernelMode.SIMD;
+                    case "--tiles" -> scheduler = TileScheduler.parse(args[++i]);
+                    case "-t", "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "-o", "--output" -> output = Paths.get(args[++i]);
+                    case "--format" -> format = args[++i].toLowerCase(Locale.ROOT);
+                    case "--png-level" -> pngLevel = Integer.parseInt(args[++i]);
+                    case "--jpeg-quality" -> jpegQuality = Float.parseFloat(args[++i]);
+                    case "--io-threads" -> ioThreads = Integer.parseInt(args[++i]);
+                    case "--pipeline" -> virtual = parsePipeline(args[++i]);
+                    case "--storage" -> storage = parseStorage(args[++i]);
+                    case "--scratch" -> scratchDir = Paths.get(args[++i]);
+                    case "--stream" -> stream = true;
+                    case "--strip-rows" -> stripRows = Integer.parseInt(args[++i]);
+                    case "--metrics" -> metricsFile = Paths.get(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("-") || input != null) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        input = args[i];
+                    }
+                }
+            }
+            if (input == null) throw new IllegalArgumentException("No input directory or glob given.");
+            if (chain == null) chain = FilterChain.of(filter, options);
+            writeOptions = new WriteOptions(pngLevel, jpegQuality);
+            if (threads < 1 || ioThreads < 1) throw new IllegalArgumentException("Thread counts must be at least 1.");
+            if (stripRows < 0) throw new IllegalArgumentException("Strip rows must not be negative.");
+            if (stream && !StreamingProcessor.supportsFormat(format)) {
+                throw new IllegalArgumentException("Streaming writes png or jpg only.");
+            }
+            if (stream && storage != null) throw new IllegalArgumentException("--stream and --storage are exclusive.");
+            if (stream && strategy == null) throw new IllegalArgumentException("--stream needs a fixed strategy, not auto.");
+            if (stream && metricsFile != null) throw new IllegalArgumentException("--metrics covers staged runs, not --stream.");
+            if (virtual) {
+                if (stream) throw new IllegalArgumentException("--stream and --pipeline virtual are exclusive.");
+                if (strategyGiven && strategy != StrategyType.VIRTUAL_THREADS) {
+                    throw new IllegalArgumentException("--pipeline virtual filters with VirtualThreads only.");
+                }
+                strategy = StrategyType.VIRTUAL_THREADS;
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value." : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        if (mode == KernelMode.SIMD && !Kernels.isSimdAvailable()) {
+            System.err.println("Vector API unavailable (run with --add-modules jdk.incubator.vector); using scalar kernels.");
+        }
+        List<Path> sources = listSources(input);
+        Path outDir = output != null ? output : baseDirectory(input).resolve("processed");
+        Files.createDirectories(outDir);
+        if (scratchDir != null) Files.createDirectories(scratchDir);
+        List<BatchPipeline.Job> jobs = planJobs(sources, outDir, format);
+        System.out.printf("Processing %d image(s) with %s%s / %s (%s) on %d thread(s) -> %s%n",
+            jobs.size(), chain, mode == KernelMode.SIMD && Kernels.isSimdAvailable() ? " (SIMD)" : "",
+            strategy != null ? strategy.getLabel() : "Auto", scheduler, threads, outDir);
+
+        BatchPipeline pipeline = new BatchPipeline(chain, mode, strategy, scheduler, threads, ioThreads, format,
+            writeOptions, storage, scratchDir);
+        long start = System.nanoTime();
+        try {
+            if (stream) {
+                pipeline.runStreaming(jobs, stripRows);
+            } else if (virtual) {
+                pipeline.runVirtual(jobs);
+            } else {
+                pipeline.run(jobs);
+            }
+        } finally {
+            WorkerPools.shared().shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Done: %d ok, %d failed in %.2f s (%.1f MP/s end to end)%n",
+            pipeline.getSucceeded(), pipeline.getFailed(), seconds, pipeline.getPixels() / 1e6 / seconds);
+        if (metricsFile != null) {
+            Metrics.Snapshot snapshot = Metrics.shared().snapshot();
+            boolean csv = metricsFile.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+            Files.writeString(metricsFile, csv ? snapshot.toCsv() : snapshot.toJson());
+            System.out.println(snapshot.describe());
+            System.out.println("Metrics written to " + metricsFile);
+        }
+        if (pipeline.getFailed() > 0) System.exit(1);
+    }
+
+    private static boolean parsePipeline(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "stages" -> false;
+            case "virtual" -> true;
+            default -> throw new IllegalArgumentException("Unknown pipeline: " + value + " (use stages or virtual)");
+        };
+    }
+
+    private static OffHeapImage.Kind parseStorage(String value) {
+        String s = value.toLowerCase(Locale.ROOT);
+        return switch (s) {
+            case "heap" -> null;
+            case "direct" -> OffHeapImage.Kind.DIRECT;
+            case "mapped" -> OffHeapImage.Kind.MAPPED;
+            default -> throw new IllegalArgumentException("Unknown storage: " + value + " (use heap, direct or mapped)");
+        };
+    }
+
+    // Measures per-pixel kernel costs once so ForkJoin leaf sizes are tuned to this machine
+    private static void calibrate() throws IOException {
+        System.out.println("Calibrating kernel costs...");
+        SplitCalibration.calibrate().forEach((kernel, nanos) ->
+            System.out.printf("  %-22s %.3f ns/pixel%n", kernel, nanos));
+        System.out.println("Saved to " + SplitCalibration.file());
+    }
+
+    static List<Path> listSources(String input) throws IOException {
+        Path dir = baseDirectory(input);
+        PathMatcher matcher;
+        if (Files.isDirectory(Paths.get(input))) {
+            matcher = p -> IMAGE_EXTENSIONS.contains(processing.ImageFiles.extension(p));
+        } else {
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + Paths.get(input).getFileName());
+            matcher = p -> glob.matches(p.getFileName());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).filter(matcher::matches).sorted().toList();
+        }
+    }
+
+    private static Path baseDirectory(String input) {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) return path;
+        Path parent = path.toAbsolutePath().getParent();
+        return parent != null ? parent : Paths.get(".");
+    }
+
+    private static List<BatchPipeline.Job> planJobs(List<Path> sources, Path outDir, String format) {
+        List<BatchPipeline.Job> jobs = new ArrayList<>();
+        Set<String> used = new HashSet<>();
+        for (Path source : sources) {
+            String name = source.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String target = (dot < 0 ? name : name.substring(0, dot)) + "." + format;
+            if (!used.add(target)) {
+                // a.png and a.jpg would both become a.<format>
+                target = name + "." + format;
+                used.add(target);
+            }
+            jobs.add(new BatchPipeline.Job(source, outDir.resolve(target)));
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,295 @@
+package batch;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import processing.ExecutionStrategy;
+import processing.FilterChain;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageFiles;
+import processing.ImageProcessor;
+import processing.KernelMode;
+import processing.Metrics;
+import processing.OffHeapImage;
+import processing.PixelPool;
+import processing.Progress;
+import processing.StreamingProcessor;
+import processing.StrategySelector;
+import processing.StrategyType;
+import processing.TaskScope;
+import processing.TileScheduler;
+import processing.WorkerPools;
+import processing.WriteOptions;
+
+/**
+ * Three-stage decode -> filter -> encode pipeline. Decoding and encoding run on their own
+ * I/O pools so disk and codec work overlaps with the CPU-bound filter stage. A semaphore caps
+ * the number of images in flight, which bounds heap use however large the batch is. With an
+ * off-heap storage kind, pixels live outside the heap from decode to encode and only the decoder
+ * and the strip windows use heap memory.
+ * <p>
+ * {@link #runVirtual} instead gives each image one virtual thread that decodes, filters and
+ * encodes it in turn, so one image's blocking I/O overlaps the others' filtering without any
+ * stage pools.
+ */
+public final class BatchPipeline {
+    public record Job(Path source, Path target) {}
+
+    // Pixels travelling between stages; offHeap is used instead of heap when storage is set.
+    // Filtered heap pixels are leased from the shared pool and go back to it after encoding.
+    private record Decoded(ImageBuffer heap, OffHeapImage offHeap, Metrics.Job job, boolean pooled) {
+        long pixelCount() {
+            return heap != null
+                ? (long) heap.getWidth() * heap.getHeight()
+                : (long) offHeap.getWidth() * offHeap.getHeight();
+        }
+
+        void release() {
+            if (offHeap != null) offHeap.close();
+            if (pooled) PixelPool.shared().release(heap);
+        }
+    }
+
+    private final List<ImageProcessor> passes;
+    private final StrategyType strategyType;
+    private final ExecutionStrategy strategy;
+    private final ExecutionStrategy ioStrategy;
+    private final TileScheduler scheduler;
+    private final int numThreads;
+    private final int ioThreads;
+    private final String format;
+    private final WriteOptions writeOptions;
+    private final OffHeapImage.Kind storage;
+    private final Path scratchDir;
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final LongAdder pixels = new LongAdder();
+
+    /** A null {@code strategyType} lets StrategySelector pick a strategy for each image. */
+    public BatchPipeline(FilterChain chain, KernelMode mode, StrategyType strategyType,
+                         TileScheduler scheduler, int numThreads, int ioThreads, String format,
+                         WriteOptions writeOptions, OffHeapImage.Kind storage, Path scratchDir) {
+        this.passes = chain.passes(mode);
+        this.strategyType = strategyType;
+        this.strategy = strategyType != null ? strategyType.create(WorkerPools.shared(), numThreads) : null;
+        // Large images are also decoded and encoded on several threads, in regions and strips
+        this.ioStrategy = StrategyType.FORK_JOIN.create(WorkerPools.shared(), numThreads);
+        this.scheduler = scheduler;
+        this.numThreads = numThreads;
+        this.ioThreads = ioThreads;
+        this.format = format;
+        this.writeOptions = writeOptions;
+        this.storage = storage;
+        this.scratchDir = scratchDir;
+    }
+
+    public void run(List<Job> jobs) throws InterruptedException {
+        // A parallel (or auto) strategy already spreads one image over every thread, so images go through
+        // the filter stage one at a time. Sequential filtering instead runs one image per thread.
+        int filterConcurrency = strategyType == StrategyType.SEQUENTIAL ? numThreads : 1;
+        ExecutorService decoders = Executors.newFixedThreadPool(ioThreads);
+        ExecutorService filters = Executors.newFixedThreadPool(filterConcurrency);
+        ExecutorService encoders = Executors.newFixedThreadPool(ioThreads);
+        Semaphore inFlight = new Semaphore(filterConcurrency + 2 * ioThreads);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        try {
+            for (Job job : jobs) {
+                inFlight.acquire();
+                CompletableFuture<Void> f = CompletableFuture
+                    .supplyAsync(() -> decode(job, ioStrategy), decoders)
+                    .thenApplyAsync(this::filter, filters)
+                    .thenAcceptAsync(image -> encode(job, image, ioStrategy), encoders)
+                    .whenComplete((ignored, error) -> {
+                        inFlight.release();
+                        if (error == null) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            System.err.println("Failed: " + job.source() + ": " + cause.getMessage());
+                        }
+                    });
+                pending.add(f);
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+        } finally {
+            decoders.shutdown();
+            filters.shutdown();
+            encoders.shutdown();
+        }
+    }
+
+    /**
+     * One virtual thread per image, all forked into one scope. Only the VirtualThreads strategy
+     * fits: its permits are shared by every image, so at most numThreads tiles are filtered at
+     * once across the whole batch while the other images' threads sit in file I/O. Region decode
+     * and strip encode go through the same permits. A failed image is reported and counted like
+     * in {@link #run}; interrupting the caller cancels every image still running.
+     */
+    public void runVirtual(List<Job> jobs) throws InterruptedException {
+        if (strategyType != StrategyType.VIRTUAL_THREADS) {
+            throw new IllegalStateException("The virtual-thread pipeline needs the VirtualThreads strategy");
+        }
+        // Bounds heap use the way the staged pipeline's in-flight limit does
+        Semaphore inFlight = new Semaphore(numThreads + 2 * ioThreads);
+        try (TaskScope scope = new TaskScope("image-")) {
+            for (Job job : jobs) {
+                inFlight.acquire();
+                scope.fork(() -> {
+                    try {
+                        encode(job, filter(decode(job, strategy)), strategy);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        System.err.println("Failed: " + job.source() + ": " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            scope.join();
+        } catch (ExecutionException e) {
+            // Images catch their own failures, so only an Error gets here
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Streams each image from source to target strip by strip instead of staging whole images.
+     * Decode, filter and encode interleave on one thread per job, so up to ioThreads jobs run at
+     * once and the filter work inside each still uses the parallel strategy.
+     */
+    public void runStreaming(List<Job> jobs, int stripRows) throws InterruptedException {
+        if (strategy == null) throw new IllegalStateException("Streaming needs a fixed strategy");
+        StreamingProcessor streamer = new StreamingProcessor(passes, strategy, scheduler, stripRows);
+        ExecutorService workers = Executors.newFixedThreadPool(ioThreads);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        try {
+            for (Job job : jobs) {
+                pending.add(CompletableFuture
+                    .runAsync(() -> stream(streamer, job), workers)
+                    .whenComplete((ignored, error) -> {
+                        if (error == null) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            Throwable cause = error.getCause() != null ? error.getCause() : error;
+                            System.err.println("Failed: " + job.source() + ": " + cause.getMessage());
+                        }
+                    }));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private void stream(StreamingProcessor streamer, Job job) {
+        try {
+            pixels.add(streamer.process(job.source(), job.target(), format, writeOptions));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BatchException(e);
+        } catch (Exception e) {
+            throw new BatchException(e);
+        }
+    }
+
+    private Decoded decode(Job job, ExecutionStrategy ioStrategy) {
+        Metrics.Job metrics = Metrics.shared().start();
+        try {
+            ExecutionStrategy io = metrics.meter(Metrics.Stage.DECODE, ioStrategy);
+            // Timers are closed only when their stage succeeds, so failures don't skew the timings
+            Metrics.Timer timer = metrics.time(Metrics.Stage.DECODE);
+            Decoded decoded = storage != null
+                ? new Decoded(null, ImageFiles.readOffHeap(job.source(), storage, scratchDir, io), metrics, false)
+                : new Decoded(ImageFiles.read(job.source(), io), null, metrics, false);
+            metrics.pixels(decoded.pixelCount());
+            timer.close();
+            return decoded;
+        } catch (Exception e) {
+            throw new BatchException(e);
+        }
+    }
+
+    private Decoded filter(Decoded image) {
+        try {
+            StrategySelector.Decision decision = strategy == null
+                ? StrategySelector.shared().choose(image.pixelCount(), passes) : null;
+            // The decision gets a pool of exactly its own size (WorkerPools never resizes a pool in
+            // place), so decode and encode running meanwhile can't change what the recorded time measured
+            ExecutionStrategy s = decision != null
+                ? decision.strategy().create(WorkerPools.shared(), decision.threads()) : strategy;
+            Metrics.Job metrics = image.job();
+            metrics.strategy(decision != null
+                ? Metrics.strategyLabel(decision.strategy(), decision.threads()) : Metrics.strategyLabel(strategyType, numThreads));
+            s = metrics.meter(Metrics.Stage.FILTER, s);
+            long start = System.nanoTime();
+            Metrics.Timer timer = metrics.time(Metrics.Stage.FILTER);
+            Decoded result = image.offHeap() != null
+                ? new Decoded(null, ImageEngine.apply(image.offHeap(), passes, s, scheduler), metrics, false)
+                : new Decoded(ImageEngine.apply(image.heap(), passes, s, scheduler, Progress.NONE, PixelPool.shared()),
+                    null, metrics, true);
+            timer.close();
+            if (decision != null) StrategySelector.shared().record(decision, passes, System.nanoTime() - start);
+            pixels.add(image.pixelCount());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BatchException(e);
+        } catch (Exception e) {
+            throw new BatchException(e);
+        } finally {
+            image.release();
+        }
+    }
+
+    private void encode(Job job, Decoded image, ExecutionStrategy ioStrategy) {
+        Metrics.Job metrics = image.job();
+        try {
+            ExecutionStrategy io = metrics.meter(Metrics.Stage.ENCODE, ioStrategy);
+            Metrics.Timer timer = metrics.time(Metrics.Stage.ENCODE);
+            if (image.offHeap() != null) {
+                ImageFiles.write(image.offHeap(), format, job.target(), writeOptions, io);
+            } else {
+                ImageFiles.write(image.heap(), format, job.target(), writeOptions, io);
+            }
+            timer.close();
+            metrics.close();
+        } catch (Exception e) {
+            throw new BatchException(e);
+        } finally {
+            image.release();
+        }
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public long getPixels() {
+        return pixels.sum();
+    }
+
+    private static class BatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BatchException(Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
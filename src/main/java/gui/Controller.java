@@ -5,21 +5,22 @@ import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.stage.FileChooser;
 import javafx.stage.Window;
-import javafx.scene.image.Image;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
 import javafx.scene.control.Alert;
 import javafx.fxml.Initializable;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import java.awt.image.BufferedImage;
-import javafx.embed.swing.SwingFXUtils;
-import java.util.concurrent.*;
-import java.util.List;
-import java.util.ArrayList;
 import javafx.concurrent.Task;
 import javafx.scene.Scene;
 import javafx.scene.input.ScrollEvent;
@@ -34,28 +35,66 @@ import javafx.scene.control.Spinner;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.control.TextField;
+import javafx.animation.Animation;
 import javafx.animation.FadeTransition;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.scene.effect.Glow;
 import javafx.util.Duration;
+import processing.ExecutionStrategy;
+import processing.FilterChain;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageFiles;
+import processing.ImageProcessor;
+import processing.ImagePyramid;
+import processing.KernelMode;
+import processing.Kernels;
+import processing.Metrics;
+import processing.Progress;
+import processing.ResultCache;
+import processing.StrategySelector;
+import processing.StrategyType;
+import processing.TileCache;
+import processing.TileRenderer;
+import processing.TileScheduler;
+import processing.WorkerPools;
+import processing.WriteOptions;
 
 public class Controller implements Initializable {
     @FXML private Button selectImageButton;
     @FXML private ComboBox<String> filterComboBox;
+    @FXML private Spinner<Integer> blurRadiusSpinner;
+    @FXML private Label chainLabel;
+    @FXML private Button addStageButton;
+    @FXML private Button clearChainButton;
+    @FXML private CheckBox simdCheckBox;
+    @FXML private CheckBox livePreviewCheckBox;
+    @FXML private CheckBox reuseResultsCheckBox;
+    @FXML private Label cacheStatsLabel;
+    @FXML private TextArea metricsArea;
     @FXML private RadioButton sequentialRadio;
     @FXML private RadioButton parallelRadio;
+    @FXML private RadioButton autoRadio;
     @FXML private ComboBox<String> parallelMethodComboBox;
     @FXML private Spinner<Integer> threadCountSpinner;
     @FXML private Button processButton;
+    @FXML private Spinner<Integer> pngLevelSpinner;
+    @FXML private Spinner<Double> jpegQualitySpinner;
     @FXML private ImageView originalImageView;
     @FXML private ImageView processedImageView;
     @FXML private TextField timeLabelField;
     @FXML private ProgressBar progressBar;
+    @FXML private Button cancelButton;
     private ToggleGroup modeToggleGroup;
     @FXML private CheckBox darkModeCheckBox;
     @FXML private ScrollPane originalScrollPane;
     @FXML private ScrollPane processedScrollPane;
     @FXML private Pane originalImagePane;
     @FXML private Pane processedImagePane;
+    @FXML private Pane processedTileLayer;
     private double originalImageScale = 1.0;
     private double processedImageScale = 1.0;
     private static final double ZOOM_FACTOR = 1.1;
@@ -63,7 +102,34 @@ public class Controller implements Initializable {
     private static final double MAX_ZOOM = 10.0;
 
     private File selectedImageFile;
-    private Image originalImage;
+    // Decoded once on selection and reused by every run; the views display these arrays in place
+    private ImageBuffer sourceBuffer;
+    private ImageBuffer resultBuffer;
+    private ImagePyramid sourcePyramid;
+    private long sourceHash;
+    // Stages added with "Add to chain"; while there are any they run instead of the selected filter
+    private FilterChain builtChain;
+
+    // Finished results by source content and filter chain, so repeats and switching back cost a lookup
+    private final ResultCache resultCache = createResultCache();
+
+    // Live preview renders on one thread and refines on another, so a slow full-resolution run
+    // never delays the next preview. Results from an older generation are dropped.
+    private final ExecutorService previewExecutor = Executors.newSingleThreadExecutor(daemonThreads("preview"));
+    private final ExecutorService refineExecutor = Executors.newSingleThreadExecutor(daemonThreads("refine"));
+    private final AtomicLong previewGeneration = new AtomicLong();
+    // The full-resolution refinement in flight, cancelled as soon as it is superseded
+    private Progress refineProgress;
+
+    // The run started by "Process", which the Cancel button stops at its next band or tile
+    private Task<ImageBuffer> processTask;
+    private Progress processProgress;
+    private Timeline progressPoll;
+
+    // Images this large are previewed tile by tile, only where the viewport is
+    private static final long TILED_VIEW_PIXELS = 16_000_000;
+    private final TileCache tileCache = new TileCache(Runtime.getRuntime().maxMemory() / 8);
+    private TiledView tiledView;
 
     @FXML private Group originalImageGroup;
     @FXML private Group processedImageGroup;
@@ -76,6 +142,45 @@ public class Controller implements Initializable {
         filterComboBox.getItems().setAll("Grayscale", "Blur", "Edge Detection");
         filterComboBox.getSelectionModel().selectFirst();
 
+        // Blur radius only applies to the blur filter
+        blurRadiusSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+            FilterOptions.MIN_BLUR_RADIUS, FilterOptions.MAX_BLUR_RADIUS, FilterOptions.DEFAULT.blurRadius()));
+        blurRadiusSpinner.disableProperty().bind(
+            filterComboBox.valueProperty().isNotEqualTo("Blur").or(processButton.disableProperty()));
+
+        pngLevelSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(
+            0, 9, WriteOptions.DEFAULT.pngLevel()));
+        jpegQualitySpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(
+            0.05, 1.0, WriteOptions.DEFAULT.jpegQuality(), 0.05));
+
+        // SIMD kernels need the jdk.incubator.vector module and a vector-capable CPU
+        if (!Kernels.isSimdAvailable()) {
+            simdCheckBox.setDisable(true);
+            simdCheckBox.setTooltip(new Tooltip("Unavailable: start with --add-modules jdk.incubator.vector"));
+        }
+
+        // Live preview re-renders whenever a setting that changes the output changes
+        filterComboBox.valueProperty().addListener((obs, oldValue, newValue) -> requestPreview());
+        blurRadiusSpinner.valueProperty().addListener((obs, oldValue, newValue) -> requestPreview());
+        livePreviewCheckBox.selectedProperty().addListener((obs, wasSelected, isSelected) -> {
+            if (isSelected) {
+                requestPreview();
+            } else {
+                previewGeneration.incrementAndGet();
+            }
+        });
+
+        // The tile layer sits over the processed view at the same size and follows its zoom
+        tiledView = new TiledView(processedTileLayer, processedScrollPane,
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads("tile")),
+            text -> timeLabelField.setText(text));
+        processedTileLayer.scaleXProperty().bind(processedImageView.scaleXProperty());
+        processedTileLayer.scaleYProperty().bind(processedImageView.scaleYProperty());
+        processedImageView.scaleXProperty().addListener((obs, oldValue, newValue) -> tiledView.update());
+        processedScrollPane.hvalueProperty().addListener((obs, oldValue, newValue) -> tiledView.update());
+        processedScrollPane.vvalueProperty().addListener((obs, oldValue, newValue) -> tiledView.update());
+        processedScrollPane.viewportBoundsProperty().addListener((obs, oldValue, newValue) -> tiledView.update());
+
         // Populate parallel method options
         parallelMethodComboBox.getItems().setAll(
             "ExecutorService",
@@ -90,11 +195,16 @@ public class Controller implements Initializable {
         threadCountSpinner.setEditable(true);
         threadCountSpinner.setDisable(true);
         parallelMethodComboBox.setDisable(true);
+        // Create the worker pools for the new count up front so the next run doesn't pay for it
+        threadCountSpinner.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue != null) WorkerPools.shared().resize(newValue);
+        });
 
         // Set up ToggleGroup for mode selection
         modeToggleGroup = new ToggleGroup();
         sequentialRadio.setToggleGroup(modeToggleGroup);
         parallelRadio.setToggleGroup(modeToggleGroup);
+        autoRadio.setToggleGroup(modeToggleGroup);
 
         // Listen for mode changes
         modeToggleGroup.selectedToggleProperty().addListener(new ChangeListener<Toggle>() {
@@ -218,510 +328,123 @@ public class Controller implements Initializable {
         File file = fileChooser.showOpenDialog(window);
         if (file != null) {
             try {
-                Image image = new Image(new FileInputStream(file));
-                originalImageView.setImage(image);
+                Metrics.Timer decode = Metrics.shared().time(Metrics.Stage.DECODE);
+                ImageBuffer source = ImageFiles.read(file.toPath(), ioStrategy());
+                long pixels = (long) source.getWidth() * source.getHeight();
+                decode.pixels(pixels);
+                decode.close();
+                Metrics.Timer convert = Metrics.shared().time(Metrics.Stage.CONVERT);
+                originalImageView.setImage(FxImages.toFxImage(source));
+                convert.pixels(pixels);
+                convert.close();
+                updateMetrics();
                 processedImageView.setImage(null);
                 selectedImageFile = file;
-                originalImage = image;
+                sourceBuffer = source;
+                sourceHash = ResultCache.contentHash(source);
+                resultBuffer = null;
+                previewGeneration.incrementAndGet();
+                cancelRefine();
+                tiledView.clear();
+                tileCache.clear();
+                ImagePyramid pyramid = new ImagePyramid(source);
+                sourcePyramid = pyramid;
+                // Build the preview levels now so the first preview doesn't wait for them
+                previewExecutor.execute(() -> pyramid.level(Integer.MAX_VALUE));
                 // Fit-to-window and center for original image
                 fitImageToWindow(originalImageView, originalScrollPane, true);
-            } catch (FileNotFoundException e) {
+                requestPreview();
+            } catch (IOException e) {
                 showError("Could not load image: " + e.getMessage());
             }
         }
     }
 
-    private BufferedImage processSequential(BufferedImage input, FilterType filter) {
-        switch (filter) {
-            case GRAYSCALE:
-                return applyGrayscale(input);
-            case BLUR:
-                return applyBlur(input);
-            case EDGE_DETECTION:
-                return applyEdgeDetection(input);
-            default:
-                throw new IllegalArgumentException("Unknown filter");
-        }
-    }
-
-    private BufferedImage applyGrayscale(BufferedImage input) {
-        BufferedImage output = new BufferedImage(input.getWidth(), input.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        for (int y = 0; y < input.getHeight(); y++) {
-            for (int x = 0; x < input.getWidth(); x++) {
-                int rgb = input.getRGB(x, y);
-                int a = (rgb >> 24) & 0xff;
-                int r = (rgb >> 16) & 0xff;
-                int g = (rgb >> 8) & 0xff;
-                int b = rgb & 0xff;
-                int gray = (r + g + b) / 3;
-                int grb = (a << 24) | (gray << 16) | (gray << 8) | gray;
-                output.setRGB(x, y, grb);
-            }
-        }
-        return output;
-    }
-
-    private BufferedImage applyBlur(BufferedImage input) {
-        // Apply blur twice for a stronger effect
-        BufferedImage temp = blurOnce(input);
-        return blurOnce(temp);
-    }
-
-    private BufferedImage blurOnce(BufferedImage input) {
-        int w = input.getWidth();
-        int h = input.getHeight();
-        BufferedImage output = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        int[] dx = {-1, 0, 1, -1, 0, 1, -1, 0, 1};
-        int[] dy = {-1, -1, -1, 0, 0, 0, 1, 1, 1};
-        for (int y = 1; y < h - 1; y++) {
-            for (int x = 1; x < w - 1; x++) {
-                int sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                for (int k = 0; k < 9; k++) {
-                    int rgb = input.getRGB(x + dx[k], y + dy[k]);
-                    sumA += (rgb >> 24) & 0xff;
-                    sumR += (rgb >> 16) & 0xff;
-                    sumG += (rgb >> 8) & 0xff;
-                    sumB += rgb & 0xff;
-                }
-                int a = sumA / 9;
-                int r = sumR / 9;
-                int g = sumG / 9;
-                int b = sumB / 9;
-                int brg = (a << 24) | (r << 16) | (g << 8) | b;
-                output.setRGB(x, y, brg);
-            }
-        }
-        return output;
-    }
-
-    private BufferedImage applyEdgeDetection(BufferedImage input) {
-        int w = input.getWidth();
-        int h = input.getHeight();
-        BufferedImage output = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        int[][] kernel = {
-            {-1, -1, -1},
-            {-1, 8, -1},
-            {-1, -1, -1}
-        };
-        for (int y = 1; y < h - 1; y++) {
-            for (int x = 1; x < w - 1; x++) {
-                int sumR = 0, sumG = 0, sumB = 0;
-                for (int ky = -1; ky <= 1; ky++) {
-                    for (int kx = -1; kx <= 1; kx++) {
-                        int rgb = input.getRGB(x + kx, y + ky);
-                        int r = (rgb >> 16) & 0xff;
-                        int g = (rgb >> 8) & 0xff;
-                        int b = rgb & 0xff;
-                        int k = kernel[ky + 1][kx + 1];
-                        sumR += r * k;
-                        sumG += g * k;
-                        sumB += b * k;
-                    }
-                }
-                int r = Math.min(Math.max(sumR, 0), 255);
-                int g = Math.min(Math.max(sumG, 0), 255);
-                int b = Math.min(Math.max(sumB, 0), 255);
-                int a = (input.getRGB(x, y) >> 24) & 0xff;
-                int erg = (a << 24) | (r << 16) | (g << 8) | b;
-                output.setRGB(x, y, erg);
-            }
-        }
-        return output;
-    }
-
-    private BufferedImage processWithExecutorService(BufferedImage input, FilterType filter, int numThreads) throws InterruptedException, ExecutionException {
-        int height = input.getHeight();
-        int width = input.getWidth();
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        int bandHeight = height / numThreads;
-        Future<?>[] futures = new Future<?>[numThreads];
-        BufferedImage blurInput = input;
-        if (filter == FilterType.BLUR) {
-            blurInput = blurOnce(input);
-        }
-        for (int t = 0; t < numThreads; t++) {
-            final int yStart = t * bandHeight;
-            final int yEnd = (t == numThreads - 1) ? height : (t + 1) * bandHeight;
-            final BufferedImage bandInput = blurInput;
-            futures[t] = executor.submit(() -> {
-                for (int y = yStart; y < yEnd; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int rgb = bandInput.getRGB(x, y);
-                        int result = rgb;
-                        switch (filter) {
-                            case GRAYSCALE:
-                                int a = (rgb >> 24) & 0xff;
-                                int r = (rgb >> 16) & 0xff;
-                                int g = (rgb >> 8) & 0xff;
-                                int b = rgb & 0xff;
-                                int gray = (r + g + b) / 3;
-                                result = (a << 24) | (gray << 16) | (gray << 8) | gray;
-                                break;
-                            case BLUR:
-                                if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                                    int sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                                    for (int dy = -1; dy <= 1; dy++) {
-                                        for (int dx = -1; dx <= 1; dx++) {
-                                            int p = bandInput.getRGB(x + dx, y + dy);
-                                            sumA += (p >> 24) & 0xff;
-                                            sumR += (p >> 16) & 0xff;
-                                            sumG += (p >> 8) & 0xff;
-                                            sumB += p & 0xff;
-                                        }
-                                    }
-                                    int a2 = sumA / 9;
-                                    int r2 = sumR / 9;
-                                    int g2 = sumG / 9;
-                                    int b2 = sumB / 9;
-                                    result = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
-                                }
-                                break;
-                            case EDGE_DETECTION:
-                                if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                                    int[][] kernel = {
-                                        {-1, -1, -1},
-                                        {-1, 8, -1},
-                                        {-1, -1, -1}
-                                    };
-                                    int sumR = 0, sumG = 0, sumB = 0;
-                                    for (int ky = -1; ky <= 1; ky++) {
-                                        for (int kx = -1; kx <= 1; kx++) {
-                                            int p = bandInput.getRGB(x + kx, y + ky);
-                                            int r3 = (p >> 16) & 0xff;
-                                            int g3 = (p >> 8) & 0xff;
-                                            int b3 = p & 0xff;
-                                            int k = kernel[ky + 1][kx + 1];
-                                            sumR += r3 * k;
-                                            sumG += g3 * k;
-                                            sumB += b3 * k;
-                                        }
-                                    }
-                                    int r3 = Math.min(Math.max(sumR, 0), 255);
-                                    int g3 = Math.min(Math.max(sumG, 0), 255);
-                                    int b3 = Math.min(Math.max(sumB, 0), 255);
-                                    int a3 = (bandInput.getRGB(x, y) >> 24) & 0xff;
-                                    result = (a3 << 24) | (r3 << 16) | (g3 << 8) | b3;
-                                }
-                                break;
-                        }
-                        output.setRGB(x, y, result);
-                    }
-                }
-            });
-        }
-        for (Future<?> f : futures) f.get();
-        executor.shutdown();
-        return output;
-    }
-
-    // ForkJoin implementation
-    private BufferedImage processWithForkJoin(BufferedImage input, FilterType filter, int numThreads) throws InterruptedException, ExecutionException {
-        int width = input.getWidth();
-        int height = input.getHeight();
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        BufferedImage blurInput = input;
-        if (filter == FilterType.BLUR) {
-            blurInput = blurOnce(input);
-        }
-        ForkJoinPool pool = new ForkJoinPool(numThreads);
-        try {
-            pool.invoke(new ImageTask(blurInput, output, filter, 0, height));
-        } finally {
-            pool.shutdown();
-            pool.awaitTermination(1, TimeUnit.MINUTES);
-        }
-        return output;
-    }
-
-    private static class ImageTask extends RecursiveAction {
-        private static final int THRESHOLD = 100;
-        private final BufferedImage input, output;
-        private final FilterType filter;
-        private final int yStart, yEnd;
-        ImageTask(BufferedImage input, BufferedImage output, FilterType filter, int yStart, int yEnd) {
-            this.input = input; this.output = output; this.filter = filter; this.yStart = yStart; this.yEnd = yEnd;
-        }
-        @Override
-        protected void compute() {
-            if (yEnd - yStart <= THRESHOLD) {
-                for (int y = yStart; y < yEnd; y++) {
-                    for (int x = 0; x < input.getWidth(); x++) {
-                        int rgb = input.getRGB(x, y);
-                        int result = rgb;
-                        switch (filter) {
-                            case GRAYSCALE:
-                                int a = (rgb >> 24) & 0xff;
-                                int r = (rgb >> 16) & 0xff;
-                                int g = (rgb >> 8) & 0xff;
-                                int b = rgb & 0xff;
-                                int gray = (r + g + b) / 3;
-                                result = (a << 24) | (gray << 16) | (gray << 8) | gray;
-                                break;
-                            case BLUR:
-                                if (x > 0 && x < input.getWidth() - 1 && y > 0 && y < input.getHeight() - 1) {
-                                    int sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                                    for (int dy = -1; dy <= 1; dy++) {
-                                        for (int dx = -1; dx <= 1; dx++) {
-                                            int p = input.getRGB(x + dx, y + dy);
-                                            sumA += (p >> 24) & 0xff;
-                                            sumR += (p >> 16) & 0xff;
-                                            sumG += (p >> 8) & 0xff;
-                                            sumB += p & 0xff;
-                                        }
-                                    }
-                                    int a2 = sumA / 9;
-                                    int r2 = sumR / 9;
-                                    int g2 = sumG / 9;
-                                    int b2 = sumB / 9;
-                                    result = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
-                                }
-                                break;
-                            case EDGE_DETECTION:
-                                if (x > 0 && x < input.getWidth() - 1 && y > 0 && y < input.getHeight() - 1) {
-                                    int[][] kernel = {
-                                        {-1, -1, -1},
-                                        {-1, 8, -1},
-                                        {-1, -1, -1}
-                                    };
-                                    int sumR = 0, sumG = 0, sumB = 0;
-                                    for (int ky = -1; ky <= 1; ky++) {
-                                        for (int kx = -1; kx <= 1; kx++) {
-                                            int p = input.getRGB(x + kx, y + ky);
-                                            int r3 = (p >> 16) & 0xff;
-                                            int g3 = (p >> 8) & 0xff;
-                                            int b3 = p & 0xff;
-                                            int k = kernel[ky + 1][kx + 1];
-                                            sumR += r3 * k;
-                                            sumG += g3 * k;
-                                            sumB += b3 * k;
-                                        }
-                                    }
-                                    int r3 = Math.min(Math.max(sumR, 0), 255);
-                                    int g3 = Math.min(Math.max(sumG, 0), 255);
-                                    int b3 = Math.min(Math.max(sumB, 0), 255);
-                                    int a3 = (input.getRGB(x, y) >> 24) & 0xff;
-                                    result = (a3 << 24) | (r3 << 16) | (g3 << 8) | b3;
-                                }
-                                break;
-                        }
-                        output.setRGB(x, y, result);
-                    }
-                }
-            } else {
-                int mid = (yStart + yEnd) / 2;
-                invokeAll(new ImageTask(input, output, filter, yStart, mid),
-                          new ImageTask(input, output, filter, mid, yEnd));
-            }
-        }
-    }
-
-    // Parallel Stream implementation
-    private BufferedImage processWithParallelStream(BufferedImage input, FilterType filter) {
-        int width = input.getWidth();
-        int height = input.getHeight();
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        final BufferedImage blurInput = (filter == FilterType.BLUR) ? blurOnce(input) : input;
-        java.util.stream.IntStream.range(0, height).parallel().forEach(y -> {
-            for (int x = 0; x < width; x++) {
-                int rgb = blurInput.getRGB(x, y);
-                int result = rgb;
-                switch (filter) {
-                    case GRAYSCALE:
-                        int a = (rgb >> 24) & 0xff;
-                        int r = (rgb >> 16) & 0xff;
-                        int g = (rgb >> 8) & 0xff;
-                        int b = rgb & 0xff;
-                        int gray = (r + g + b) / 3;
-                        result = (a << 24) | (gray << 16) | (gray << 8) | gray;
-                        break;
-                    case BLUR:
-                        if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                            int sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                            for (int dy = -1; dy <= 1; dy++) {
-                                for (int dx = -1; dx <= 1; dx++) {
-                                    int p = blurInput.getRGB(x + dx, y + dy);
-                                    sumA += (p >> 24) & 0xff;
-                                    sumR += (p >> 16) & 0xff;
-                                    sumG += (p >> 8) & 0xff;
-                                    sumB += p & 0xff;
-                                }
-                            }
-                            int a2 = sumA / 9;
-                            int r2 = sumR / 9;
-                            int g2 = sumG / 9;
-                            int b2 = sumB / 9;
-                            result = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
-                        }
-                        break;
-                    case EDGE_DETECTION:
-                        if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                            int[][] kernel = {
-                                {-1, -1, -1},
-                                {-1, 8, -1},
-                                {-1, -1, -1}
-                            };
-                            int sumR = 0, sumG = 0, sumB = 0;
-                            for (int ky = -1; ky <= 1; ky++) {
-                                for (int kx = -1; kx <= 1; kx++) {
-                                    int p = blurInput.getRGB(x + kx, y + ky);
-                                    int r3 = (p >> 16) & 0xff;
-                                    int g3 = (p >> 8) & 0xff;
-                                    int b3 = p & 0xff;
-                                    int k = kernel[ky + 1][kx + 1];
-                                    sumR += r3 * k;
-                                    sumG += g3 * k;
-                                    sumB += b3 * k;
-                                }
-                            }
-                            int r3 = Math.min(Math.max(sumR, 0), 255);
-                            int g3 = Math.min(Math.max(sumG, 0), 255);
-                            int b3 = Math.min(Math.max(sumB, 0), 255);
-                            int a3 = (blurInput.getRGB(x, y) >> 24) & 0xff;
-                            result = (a3 << 24) | (r3 << 16) | (g3 << 8) | b3;
-                        }
-                        break;
-                }
-                output.setRGB(x, y, result);
-            }
-        });
-        return output;
-    }
-
-    // Virtual Threads implementation (Java 21)
-    private BufferedImage processWithVirtualThreads(BufferedImage input, FilterType filter, int numThreads) throws InterruptedException {
-        int width = input.getWidth();
-        int height = input.getHeight();
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        int bandHeight = height / numThreads;
-        List<Thread> threads = new ArrayList<>();
-        BufferedImage blurInput = input;
-        if (filter == FilterType.BLUR) {
-            blurInput = blurOnce(input);
-        }
-        for (int t = 0; t < numThreads; t++) {
-            final int yStart = t * bandHeight;
-            final int yEnd = (t == numThreads - 1) ? height : (t + 1) * bandHeight;
-            final BufferedImage bandInput = blurInput;
-            Thread vt = Thread.ofVirtual().start(() -> {
-                for (int y = yStart; y < yEnd; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int rgb = bandInput.getRGB(x, y);
-                        int result = rgb;
-                        switch (filter) {
-                            case GRAYSCALE:
-                                int a = (rgb >> 24) & 0xff;
-                                int r = (rgb >> 16) & 0xff;
-                                int g = (rgb >> 8) & 0xff;
-                                int b = rgb & 0xff;
-                                int gray = (r + g + b) / 3;
-                                result = (a << 24) | (gray << 16) | (gray << 8) | gray;
-                                break;
-                            case BLUR:
-                                if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                                    int sumR = 0, sumG = 0, sumB = 0, sumA = 0;
-                                    for (int dy = -1; dy <= 1; dy++) {
-                                        for (int dx = -1; dx <= 1; dx++) {
-                                            int p = bandInput.getRGB(x + dx, y + dy);
-                                            sumA += (p >> 24) & 0xff;
-                                            sumR += (p >> 16) & 0xff;
-                                            sumG += (p >> 8) & 0xff;
-                                            sumB += p & 0xff;
-                                        }
-                                    }
-                                    int a2 = sumA / 9;
-                                    int r2 = sumR / 9;
-                                    int g2 = sumG / 9;
-                                    int b2 = sumB / 9;
-                                    result = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
-                                }
-                                break;
-                            case EDGE_DETECTION:
-                                if (x > 0 && x < width - 1 && y > 0 && y < height - 1) {
-                                    int[][] kernel = {
-                                        {-1, -1, -1},
-                                        {-1, 8, -1},
-                                        {-1, -1, -1}
-                                    };
-                                    int sumR = 0, sumG = 0, sumB = 0;
-                                    for (int ky = -1; ky <= 1; ky++) {
-                                        for (int kx = -1; kx <= 1; kx++) {
-                                            int p = bandInput.getRGB(x + kx, y + ky);
-                                            int r3 = (p >> 16) & 0xff;
-                                            int g3 = (p >> 8) & 0xff;
-                                            int b3 = p & 0xff;
-                                            int k = kernel[ky + 1][kx + 1];
-                                            sumR += r3 * k;
-                                            sumG += g3 * k;
-                                            sumB += b3 * k;
-                                        }
-                                    }
-                                    int r3 = Math.min(Math.max(sumR, 0), 255);
-                                    int g3 = Math.min(Math.max(sumG, 0), 255);
-                                    int b3 = Math.min(Math.max(sumB, 0), 255);
-                                    int a3 = (bandInput.getRGB(x, y) >> 24) & 0xff;
-                                    result = (a3 << 24) | (r3 << 16) | (g3 << 8) | b3;
-                                }
-                                break;
-                        }
-                        output.setRGB(x, y, result);
-                    }
-                }
-            });
-            threads.add(vt);
-        }
-        for (Thread t : threads) t.join();
-        return output;
-    }
-
     @FXML
     private void onProcess() {
-        if (originalImage == null) {
+        if (sourceBuffer == null) {
             showAlert("No image selected.");
             return;
         }
-        FilterType filter = FilterType.valueOf(filterComboBox.getValue().toUpperCase().replace(" ", "_"));
+        FilterChain chain = currentChain();
         boolean isSequential = sequentialRadio.isSelected();
+        boolean isAuto = autoRadio.isSelected();
         String method = parallelMethodComboBox.getValue();
         int numThreads = threadCountSpinner.getValue();
+        KernelMode mode = simdCheckBox.isSelected() ? KernelMode.SIMD : KernelMode.SCALAR;
+        ImageBuffer input = sourceBuffer;
+        ResultCache.Key key = reuseResultsCheckBox.isSelected() ? ResultCache.Key.of(sourceHash, input, chain) : null;
+        // An explicit run supersedes any live preview still in flight
+        previewGeneration.incrementAndGet();
+        cancelRefine();
+        tiledView.clear();
+        Progress progress = new Progress();
 
         // Disable UI and show progress bar
         setProcessingUI(true);
-        Task<BufferedImage> task = new Task<>() {
+        var task = new Task<ImageBuffer>() {
+            // Followed from the filter to the display conversion; null for cached results
+            Metrics.Job job;
+
             @Override
-            protected BufferedImage call() throws Exception {
-                BufferedImage input = SwingFXUtils.fromFXImage(originalImage, null);
-                long start = System.nanoTime();
-                BufferedImage result;
-                if (isSequential) {
-                    result = processSequential(input, filter);
+            protected ImageBuffer call() throws Exception {
+                List<ImageProcessor> passes = chain.passes(mode);
+                StrategySelector.Decision decision = null;
+                StrategyType strategy;
+                int threads = numThreads;
+                if (isAuto) {
+                    decision = StrategySelector.shared().choose((long) input.getWidth() * input.getHeight(), passes);
+                    strategy = decision.strategy();
+                    threads = decision.threads();
+                } else if (isSequential) {
+                    strategy = StrategyType.SEQUENTIAL;
                 } else {
                     if (method == null) throw new IllegalArgumentException("Select a parallel method.");
-                    switch (method) {
-                        case "ExecutorService":
-                            result = processWithExecutorService(input, filter, numThreads);
-                            break;
-                        case "ForkJoin":
-                            result = processWithForkJoin(input, filter, numThreads);
-                            break;
-                        case "ParallelStream":
-                            result = processWithParallelStream(input, filter);
-                            break;
-                        case "VirtualThreads":
-                            result = processWithVirtualThreads(input, filter, numThreads);
-                            break;
-                        default:
-                            throw new IllegalArgumentException("Selected parallel method not implemented yet.");
+                    strategy = StrategyType.fromLabel(method);
+                }
+                long start = System.nanoTime();
+                if (key != null) {
+                    ImageBuffer cached = resultCache.get(key);
+                    if (cached != null) {
+                        updateMessage(String.format("Time: %.2f ms (cached)", (System.nanoTime() - start) / 1_000_000.0));
+                        return cached;
                     }
                 }
+                long pixels = (long) input.getWidth() * input.getHeight();
+                job = Metrics.shared().start(Metrics.strategyLabel(strategy, threads), pixels);
+                ExecutionStrategy executionStrategy = job.meter(Metrics.Stage.FILTER, strategy.create(threads));
+                long filterStart = System.nanoTime();
+                // Closed only on success, so cancelled runs stay out of the filter timings
+                Metrics.Timer filter = job.time(Metrics.Stage.FILTER);
+                ImageBuffer result = ImageEngine.apply(input, passes, executionStrategy,
+                    TileScheduler.rowBands(), progress);
+                filter.close();
                 long end = System.nanoTime();
-                updateMessage(String.format("Time: %.2f ms", (end - start) / 1_000_000.0));
+                if (decision != null) StrategySelector.shared().record(decision, passes, end - filterStart);
+                if (key != null) resultCache.put(key, result);
+                String time = String.format("Time: %.2f ms", (end - start) / 1_000_000.0);
+                if (decision != null) {
+                    time += " (Auto: " + decision + ")";
+                } else if (strategy == StrategyType.PARALLEL_STREAM) {
+                    time += String.format(" (%d of %d threads used)", executionStrategy.observedParallelism(), numThreads);
+                }
+                updateMessage(time);
                 return result;
             }
         };
         task.setOnSucceeded(e -> {
-            processedImageView.setImage(SwingFXUtils.toFXImage(task.getValue(), null));
+            resultBuffer = task.getValue();
+            if (task.job != null) {
+                Metrics.Timer convertBack = task.job.time(Metrics.Stage.CONVERT_BACK);
+                showProcessed(resultBuffer);
+                convertBack.close();
+                task.job.close();
+            } else {
+                showProcessed(resultBuffer);
+            }
             timeLabelField.setText(task.getMessage());
+            updateCacheStats();
+            updateMetrics();
             // Animate with a quick blue glow using CSS class
             timeLabelField.getStyleClass().add("time-label-blue-glow");
             FadeTransition ft = new FadeTransition(Duration.millis(400), timeLabelField);
@@ -739,21 +462,270 @@ public class Controller implements Initializable {
             showAlert("Processing failed: " + task.getException().getMessage());
             setProcessingUI(false);
         });
-        progressBar.progressProperty().bind(task.progressProperty());
+        task.setOnCancelled(e -> {
+            timeLabelField.setText("Cancelled");
+            setProcessingUI(false);
+        });
+        processTask = task;
+        processProgress = progress;
+        // Workers only bump a counter; the bar reads it a few times a second
+        progressPoll = new Timeline(new KeyFrame(Duration.millis(100), e -> progressBar.setProgress(progress.fraction())));
+        progressPoll.setCycleCount(Animation.INDEFINITE);
+        progressPoll.play();
         new Thread(task).start();
     }
 
+    @FXML
+    private void onCancel() {
+        if (processTask == null) return;
+        processProgress.cancel();
+        processTask.cancel(true);
+    }
+
+    @FXML
+    private void onAddStage() {
+        FilterType filter = selectedFilter();
+        FilterOptions options = new FilterOptions(blurRadiusSpinner.getValue());
+        builtChain = builtChain == null ? FilterChain.of(filter, options) : builtChain.then(filter, options);
+        chainLabel.setText("Chain: " + builtChain);
+        requestPreview();
+    }
+
+    @FXML
+    private void onClearChain() {
+        builtChain = null;
+        chainLabel.setText("Chain: none");
+        requestPreview();
+    }
+
+    private FilterType selectedFilter() {
+        return FilterType.valueOf(filterComboBox.getValue().toUpperCase().replace(" ", "_"));
+    }
+
+    // The built chain if there is one, else the selected filter on its own
+    private FilterChain currentChain() {
+        if (builtChain != null) return builtChain;
+        return FilterChain.of(selectedFilter(), new FilterOptions(blurRadiusSpinner.getValue()));
+    }
+
+    private void requestPreview() {
+        if (!livePreviewCheckBox.isSelected() || sourceBuffer == null || processButton.isDisabled()) return;
+        long generation = previewGeneration.incrementAndGet();
+        cancelRefine();
+        resultBuffer = null;
+        FilterChain chain = currentChain();
+        KernelMode mode = simdCheckBox.isSelected() ? KernelMode.SIMD : KernelMode.SCALAR;
+        boolean auto = autoRadio.isSelected();
+        StrategyType strategy = !parallelRadio.isSelected() || parallelMethodComboBox.getValue() == null
+            ? StrategyType.SEQUENTIAL
+            : StrategyType.fromLabel(parallelMethodComboBox.getValue());
+        int threads = threadCountSpinner.getValue();
+        ImagePyramid pyramid = sourcePyramid;
+        if ((long) sourceBuffer.getWidth() * sourceBuffer.getHeight() >= TILED_VIEW_PIXELS) {
+            requestTiledPreview(generation, new TileRenderer(pyramid, chain, mode, tileCache));
+            return;
+        }
+        tiledView.clear();
+        Progress progress = new Progress();
+        refineProgress = progress;
+        ResultCache.Key key = reuseResultsCheckBox.isSelected()
+            ? ResultCache.Key.of(sourceHash, sourceBuffer, chain) : null;
+        int level = ImagePyramid.levelFor(processedDisplayScale());
+        previewExecutor.execute(() -> {
+            if (previewGeneration.get() != generation) return;
+            try {
+                List<ImageProcessor> passes = chain.passes(mode);
+                ImageBuffer base = pyramid.base();
+                // Auto picks for the full-resolution refine; the small preview just reuses the choice
+                ExecutionStrategy executionStrategy = strategy.create(threads);
+                if (auto) {
+                    StrategySelector.Decision decision =
+                        StrategySelector.shared().choose((long) base.getWidth() * base.getHeight(), passes);
+                    executionStrategy = decision.strategy().create(decision.threads());
+                }
+                ImageBuffer cached = key != null ? resultCache.get(key) : null;
+                if (cached != null) {
+                    Platform.runLater(() -> {
+                        updateCacheStats();
+                        if (previewGeneration.get() != generation) return;
+                        resultBuffer = cached;
+                        showProcessed(cached);
+                        timeLabelField.setText("Time: cached");
+                    });
+                    return;
+                }
+                if (level > 0) {
+                    long start = System.nanoTime();
+                    ImageBuffer small = pyramid.level(level);
+                    int factor = Math.round((float) pyramid.base().getWidth() / small.getWidth());
+                    ImageBuffer preview = ImageEngine.apply(small, chain.downscaled(factor).passes(mode), executionStrategy);
+                    double ms = (System.nanoTime() - start) / 1_000_000.0;
+                    Platform.runLater(() -> {
+                        if (previewGeneration.get() != generation) return;
+                        showProcessed(preview);
+                        timeLabelField.setText(String.format("Preview at 1/%d: %.1f ms, refining...", factor, ms));
+                    });
+                }
+                ExecutionStrategy refineStrategy = executionStrategy;
+                refineExecutor.execute(() -> refine(generation, base, passes, refineStrategy, progress, key));
+            } catch (Exception e) {
+                showPreviewFailure(generation, e);
+            }
+        });
+    }
+
+    // The deepest pyramid level, filtered, stands in behind the tiles until they arrive
+    private void requestTiledPreview(long generation, TileRenderer renderer) {
+        previewExecutor.execute(() -> {
+            if (previewGeneration.get() != generation) return;
+            try {
+                ImageBuffer backdrop = renderer.render(renderer.pyramid().depth(), 0, 0);
+                Platform.runLater(() -> {
+                    if (previewGeneration.get() != generation) return;
+                    showProcessed(backdrop);
+                    tiledView.show(renderer);
+                });
+            } catch (Exception e) {
+                showPreviewFailure(generation, e);
+            }
+        });
+    }
+
+    private void cancelRefine() {
+        if (refineProgress != null) refineProgress.cancel();
+        refineProgress = null;
+    }
+
+    // A superseded refinement stops with a CancellationException, which the generation check then hides
+    private void refine(long generation, ImageBuffer source, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                        Progress progress, ResultCache.Key key) {
+        if (previewGeneration.get() != generation) return;
+        try {
+            long start = System.nanoTime();
+            ImageBuffer full = ImageEngine.apply(source, passes, strategy, TileScheduler.rowBands(), progress);
+            double ms = (System.nanoTime() - start) / 1_000_000.0;
+            if (key != null) resultCache.put(key, full);
+            Platform.runLater(() -> {
+                updateCacheStats();
+                if (previewGeneration.get() != generation) return;
+                resultBuffer = full;
+                showProcessed(full);
+                timeLabelField.setText(String.format("Time: %.2f ms", ms));
+            });
+        } catch (Exception e) {
+            showPreviewFailure(generation, e);
+        }
+    }
+
+    private void updateCacheStats() {
+        ResultCache.Stats stats = resultCache.stats();
+        cacheStatsLabel.setText(String.format("Cache: %d hits (%d from disk), %d misses, %.0f MB",
+            stats.hits(), stats.diskHits(), stats.misses(), stats.memoryBytes() / 1e6));
+    }
+
+    private void updateMetrics() {
+        metricsArea.setText(Metrics.shared().snapshot().describe());
+    }
+
+    @FXML
+    private void onExportMetricsJson() {
+        exportMetrics("JSON", "*.json", Metrics.shared().snapshot().toJson());
+    }
+
+    @FXML
+    private void onExportMetricsCsv() {
+        exportMetrics("CSV", "*.csv", Metrics.shared().snapshot().toCsv());
+    }
+
+    @FXML
+    private void onResetMetrics() {
+        Metrics.shared().reset();
+        updateMetrics();
+    }
+
+    private void exportMetrics(String kind, String pattern, String content) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Metrics");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(kind, pattern));
+        File file = fileChooser.showSaveDialog(metricsArea.getScene().getWindow());
+        if (file == null) return;
+        try {
+            Files.writeString(file.toPath(), content);
+        } catch (IOException e) {
+            showError("Failed to export metrics: " + e.getMessage());
+        }
+    }
+
+    // -Dimageprocessor.resultCache=<dir> adds a disk tier of -Dimageprocessor.resultCacheMb (default 2048) MB
+    private static ResultCache createResultCache() {
+        long memoryBytes = Runtime.getRuntime().maxMemory() / 4;
+        String dir = System.getProperty("imageprocessor.resultCache");
+        if (dir != null) {
+            try {
+                long diskBytes = Long.getLong("imageprocessor.resultCacheMb", 2048) << 20;
+                return new ResultCache(memoryBytes, Path.of(dir), diskBytes);
+            } catch (IOException e) {
+                System.err.println("Result cache directory unusable, keeping results in memory only: " + e.getMessage());
+            }
+        }
+        return new ResultCache(memoryBytes);
+    }
+
+    private void showPreviewFailure(long generation, Exception e) {
+        Platform.runLater(() -> {
+            if (previewGeneration.get() == generation) timeLabelField.setText("Preview failed: " + e.getMessage());
+        });
+    }
+
+    // The processed view is always laid out at source size, so a preview and the full result
+    // occupy the same space and the user's zoom carries over between them
+    private void showProcessed(ImageBuffer image) {
+        boolean first = processedImageView.getImage() == null;
+        processedImageView.setFitWidth(sourceBuffer.getWidth());
+        processedImageView.setFitHeight(sourceBuffer.getHeight());
+        processedImageView.setImage(FxImages.toFxImage(image));
+        if (first) fitImageToWindow(processedImageView, processedScrollPane, false);
+    }
+
+    // Screen pixels per source pixel in the processed view, or what fit-to-window will give
+    private double processedDisplayScale() {
+        if (processedImageView.getImage() != null) return processedImageScale;
+        double viewportWidth = processedScrollPane.getViewportBounds().getWidth();
+        double viewportHeight = processedScrollPane.getViewportBounds().getHeight();
+        if (viewportWidth <= 0 || viewportHeight <= 0) return 1.0;
+        return Math.min(1.0, Math.min(viewportWidth / sourceBuffer.getWidth(), viewportHeight / sourceBuffer.getHeight()));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
     private void setProcessingUI(boolean processing) {
         processButton.setDisable(processing);
         selectImageButton.setDisable(processing);
         filterComboBox.setDisable(processing);
+        addStageButton.setDisable(processing);
+        clearChainButton.setDisable(processing);
+        simdCheckBox.setDisable(processing || !Kernels.isSimdAvailable());
         sequentialRadio.setDisable(processing);
         parallelRadio.setDisable(processing);
-        parallelMethodComboBox.setDisable(processing || sequentialRadio.isSelected());
-        threadCountSpinner.setDisable(processing || sequentialRadio.isSelected());
+        autoRadio.setDisable(processing);
+        parallelMethodComboBox.setDisable(processing || !parallelRadio.isSelected());
+        threadCountSpinner.setDisable(processing || !parallelRadio.isSelected());
         progressBar.setManaged(processing);
         progressBar.setVisible(processing);
+        cancelButton.setManaged(processing);
+        cancelButton.setVisible(processing);
         if (!processing) {
+            if (progressPoll != null) progressPoll.stop();
+            progressPoll = null;
+            processTask = null;
+            processProgress = null;
             progressBar.progressProperty().unbind();
             progressBar.setProgress(0);
         } else {
@@ -765,6 +737,11 @@ public class Controller implements Initializable {
         updateParallelOptions();
     }
 
+    // Decoding and encoding use the shared pools at the thread count chosen for filtering
+    private ExecutionStrategy ioStrategy() {
+        return StrategyType.FORK_JOIN.create(threadCountSpinner.getValue());
+    }
+
     private void showError(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -788,8 +765,9 @@ public class Controller implements Initializable {
                 if (imageView.getImage() == null) return;
                 double viewportWidth = scrollPane.getViewportBounds().getWidth();
                 double viewportHeight = scrollPane.getViewportBounds().getHeight();
-                double imageWidth = imageView.getImage().getWidth();
-                double imageHeight = imageView.getImage().getHeight();
+                // Previews are drawn at the source size through fitWidth/fitHeight
+                double imageWidth = imageView.getFitWidth() > 0 ? imageView.getFitWidth() : imageView.getImage().getWidth();
+                double imageHeight = imageView.getFitHeight() > 0 ? imageView.getFitHeight() : imageView.getImage().getHeight();
                 double scale = Math.min(viewportWidth / imageWidth, viewportHeight / imageHeight);
                 scale = Math.min(1.0, scale); // Never zoom in by default
                 if (isOriginal) {
@@ -807,7 +785,7 @@ public class Controller implements Initializable {
 
     @FXML
     private void onSaveImage() {
-        if (processedImageView.getImage() == null) {
+        if (resultBuffer == null) {
             showAlert("No processed image to save.");
             return;
         }
@@ -825,8 +803,13 @@ public class Controller implements Initializable {
                 if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
                     ext = "jpg";
                 }
-                BufferedImage bImage = SwingFXUtils.fromFXImage(processedImageView.getImage(), null);
-                javax.imageio.ImageIO.write(bImage, ext, file);
+                // Encodes straight from the processed pixels; JPEG gets an opaque view of the same array
+                WriteOptions options = new WriteOptions(pngLevelSpinner.getValue(), jpegQualitySpinner.getValue().floatValue());
+                Metrics.Timer encode = Metrics.shared().time(Metrics.Stage.ENCODE);
+                ImageFiles.write(resultBuffer, ext, file.toPath(), options, ioStrategy());
+                encode.pixels((long) resultBuffer.getWidth() * resultBuffer.getHeight());
+                encode.close();
+                updateMetrics();
                 showAlert("Image saved successfully.");
             } catch (Exception e) {
                 showError("Failed to save image: " + e.getMessage());
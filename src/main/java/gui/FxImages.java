@@ -0,0 +1,40 @@
+package gui;
+
+import java.nio.IntBuffer;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import processing.ImageBuffer;
+
+/**
+ * Shows ImageBuffers in JavaFX without going through BufferedImage. JavaFX can only share
+ * premultiplied int pixels, so a buffer is wrapped in place when premultiplying wouldn't
+ * change it (every pixel opaque or fully transparent black); otherwise its pixels are
+ * written once into a new image, converting as they go. A shared buffer must not be
+ * modified while it is displayed.
+ */
+final class FxImages {
+    private FxImages() {}
+
+    static WritableImage toFxImage(ImageBuffer buffer) {
+        int w = buffer.getWidth();
+        int h = buffer.getHeight();
+        int[] pixels = buffer.getPixels();
+        if (premultipliedAsIs(pixels, w * h)) {
+            PixelBuffer<IntBuffer> shared = new PixelBuffer<>(w, h, IntBuffer.wrap(pixels, 0, w * h),
+                PixelFormat.getIntArgbPreInstance());
+            return new WritableImage(shared);
+        }
+        WritableImage image = new WritableImage(w, h);
+        image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+        return image;
+    }
+
+    private static boolean premultipliedAsIs(int[] pixels, int length) {
+        for (int i = 0; i < length; i++) {
+            int p = pixels[i];
+            if (p >>> 24 != 0xff && p != 0) return false;
+        }
+        return true;
+    }
+}
@@ -1,6 +0,0 @@
-package gui;
-
-@FunctionalInterface
-public interface ImageProcessor {
-    java.awt.image.BufferedImage process(java.awt.image.BufferedImage input);
-} 
\ No newline at end of file
@@ -5,6 +5,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import processing.WorkerPools;
 
 public class MainApp extends Application {
     @Override
@@ -15,6 +16,11 @@ public class MainApp extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        WorkerPools.shared().shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,175 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import processing.ImageBuffer;
+import processing.ImagePyramid;
+import processing.TileRenderer;
+
+/**
+ * Draws a filtered image as tiles over the processed view, filtering only the tiles that
+ * intersect the viewport, at the pyramid level the current zoom needs. A ring of tiles
+ * around the viewport is rendered too, so short pans find their tiles ready. Tiles that
+ * scroll away before their turn are cancelled. The layer is laid out at the source size,
+ * like the processed ImageView under it, and must follow that view's scale.
+ * All methods run on the FX thread.
+ */
+final class TiledView {
+    private static final int PREFETCH_RING = 1;
+
+    private record Tile(int level, int x, int y) {}
+
+    private final Pane layer;
+    private final ScrollPane scrollPane;
+    private final ExecutorService workers;
+    private final Consumer<String> status;
+    private final Map<Tile, ImageView> shown = new HashMap<>();
+    private final Map<Tile, Future<?>> pending = new HashMap<>();
+    private Set<Tile> wanted = Set.of();
+    private TileRenderer renderer;
+    private long generation;
+
+    TiledView(Pane layer, ScrollPane scrollPane, ExecutorService workers, Consumer<String> status) {
+        this.layer = layer;
+        this.scrollPane = scrollPane;
+        this.workers = workers;
+        this.status = status;
+    }
+
+    boolean isActive() {
+        return renderer != null;
+    }
+
+    /** Starts showing {@code renderer}'s tiles, replacing whatever was shown before. */
+    void show(TileRenderer renderer) {
+        clear();
+        this.renderer = renderer;
+        ImageBuffer base = renderer.pyramid().base();
+        layer.setPrefSize(base.getWidth(), base.getHeight());
+        layer.setVisible(true);
+        update();
+    }
+
+    void clear() {
+        generation++;
+        pending.values().forEach(f -> f.cancel(false));
+        pending.clear();
+        shown.clear();
+        wanted = Set.of();
+        layer.getChildren().clear();
+        layer.setVisible(false);
+        renderer = null;
+    }
+
+    /** Call whenever the zoom or scroll position changes. */
+    void update() {
+        if (renderer == null || scrollPane.getScene() == null) return;
+        ImageBuffer base = renderer.pyramid().base();
+        int level = renderer.clampLevel(ImagePyramid.levelFor(layer.getScaleX()));
+        ImageBuffer levelImage = renderer.pyramid().level(level);
+        double sx = (double) base.getWidth() / levelImage.getWidth();
+        double sy = (double) base.getHeight() / levelImage.getHeight();
+        Bounds visible = layer.sceneToLocal(scrollPane.localToScene(scrollPane.getLayoutBounds()));
+        int tilesX = renderer.tilesX(level);
+        int tilesY = renderer.tilesY(level);
+        int tx0 = tileAt(visible.getMinX() / sx, tilesX);
+        int tx1 = tileAt(visible.getMaxX() / sx, tilesX);
+        int ty0 = tileAt(visible.getMinY() / sy, tilesY);
+        int ty1 = tileAt(visible.getMaxY() / sy, tilesY);
+
+        // Visible tiles first, then the prefetch ring, so the workers pick them up in that order
+        List<Tile> order = new ArrayList<>();
+        for (int ring = 0; ring <= PREFETCH_RING; ring++) {
+            for (int ty = ty0 - ring; ty <= ty1 + ring; ty++) {
+                for (int tx = tx0 - ring; tx <= tx1 + ring; tx++) {
+                    boolean onRing = tx == tx0 - ring || tx == tx1 + ring || ty == ty0 - ring || ty == ty1 + ring;
+                    if (ring > 0 && !onRing) continue;
+                    if (tx < 0 || ty < 0 || tx >= tilesX || ty >= tilesY) continue;
+                    order.add(new Tile(level, tx, ty));
+                }
+            }
+        }
+        wanted = new HashSet<>(order);
+
+        pending.entrySet().removeIf(e -> {
+            if (wanted.contains(e.getKey())) return false;
+            e.getValue().cancel(false);
+            return true;
+        });
+        TileRenderer current = renderer;
+        long gen = generation;
+        for (Tile tile : order) {
+            if (shown.containsKey(tile) || pending.containsKey(tile)) continue;
+            ImageBuffer cached = current.cached(tile.level(), tile.x(), tile.y());
+            if (cached != null) {
+                place(tile, cached);
+                continue;
+            }
+            pending.put(tile, workers.submit(() -> {
+                try {
+                    ImageBuffer image = current.render(tile.level(), tile.x(), tile.y());
+                    Platform.runLater(() -> arrived(gen, tile, image, null));
+                } catch (Exception e) {
+                    Platform.runLater(() -> arrived(gen, tile, null, e));
+                }
+            }));
+        }
+        pruneIfSettled();
+    }
+
+    private void arrived(long gen, Tile tile, ImageBuffer image, Exception failure) {
+        if (gen != generation) return;
+        pending.remove(tile);
+        if (failure != null) {
+            status.accept("Tile failed: " + failure.getMessage());
+            return;
+        }
+        if (wanted.contains(tile)) place(tile, image);
+        pruneIfSettled();
+    }
+
+    private void place(Tile tile, ImageBuffer image) {
+        ImageBuffer base = renderer.pyramid().base();
+        ImageBuffer levelImage = renderer.pyramid().level(tile.level());
+        double sx = (double) base.getWidth() / levelImage.getWidth();
+        double sy = (double) base.getHeight() / levelImage.getHeight();
+        ImageView view = new ImageView(FxImages.toFxImage(image));
+        view.setX(tile.x() * TileRenderer.TILE_SIZE * sx);
+        view.setY(tile.y() * TileRenderer.TILE_SIZE * sy);
+        view.setFitWidth(image.getWidth() * sx);
+        view.setFitHeight(image.getHeight() * sy);
+        shown.put(tile, view);
+        layer.getChildren().add(view);
+    }
+
+    // Tiles from the previous zoom level stay up until the new level is complete, so zooming
+    // never falls back to a blank view
+    private void pruneIfSettled() {
+        if (!pending.isEmpty()) return;
+        shown.entrySet().removeIf(e -> {
+            if (wanted.contains(e.getKey())) return false;
+            layer.getChildren().remove(e.getValue());
+            return true;
+        });
+        int level = wanted.isEmpty() ? 0 : wanted.iterator().next().level();
+        status.accept(String.format("Tiled view at 1/%d: %d tiles on screen (press Process for a full-size result)",
+            1 << level, shown.size()));
+    }
+
+    // The tile holding a level coordinate, clamped to the level; truncating is flooring once clamped at 0
+    private static int tileAt(double position, int tiles) {
+        return Math.max(0, Math.min(tiles - 1, (int) (position / TileRenderer.TILE_SIZE)));
+    }
+}
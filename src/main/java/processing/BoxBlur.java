@@ -0,0 +1,49 @@
+package processing;
+
+/**
+ * Shared pieces of the separable box blur. Each pass keeps a running per-channel sum over
+ * a window of 2 * radius + 1 pixels, so its cost per pixel doesn't depend on the radius.
+ * Pixels outside the image are clamped to the nearest edge pixel.
+ */
+final class BoxBlur {
+    private BoxBlur() {}
+
+    /** div[sum] == sum / (2 * radius + 1) for every reachable channel sum; cheaper than dividing. */
+    static int[] divisionTable(int radius) {
+        int window = 2 * radius + 1;
+        int[] div = new int[255 * window + 1];
+        for (int i = 0; i < div.length; i++) {
+            div[i] = i / window;
+        }
+        return div;
+    }
+
+    static int clamp(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+
+    /**
+     * Horizontal pass over columns [x0, x1) of one row of {@code w} pixels starting at in[inOff];
+     * results go to out[outOff..outOff + x1 - x0).
+     */
+    static void blurRow(int[] in, int inOff, int w, int x0, int x1, int[] out, int outOff, int radius, int[] div) {
+        int last = w - 1;
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        for (int k = x0 - radius; k <= x0 + radius; k++) {
+            int p = in[inOff + clamp(k, last)];
+            sumA += p >>> 24;
+            sumR += (p >> 16) & 0xff;
+            sumG += (p >> 8) & 0xff;
+            sumB += p & 0xff;
+        }
+        for (int x = x0, o = outOff; x < x1; x++, o++) {
+            out[o] = (div[sumA] << 24) | (div[sumR] << 16) | (div[sumG] << 8) | div[sumB];
+            int leaving = in[inOff + clamp(x - radius, last)];
+            int entering = in[inOff + clamp(x + radius + 1, last)];
+            sumA += (entering >>> 24) - (leaving >>> 24);
+            sumR += ((entering >> 16) & 0xff) - ((leaving >> 16) & 0xff);
+            sumG += ((entering >> 8) & 0xff) - ((leaving >> 8) & 0xff);
+            sumB += (entering & 0xff) - (leaving & 0xff);
+        }
+    }
+}
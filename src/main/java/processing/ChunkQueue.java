@@ -0,0 +1,38 @@
+package processing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out chunks of [0, items) to whichever worker asks next. Workers that finish early
+ * simply claim more, so uneven chunks don't leave threads idle.
+ */
+final class ChunkQueue {
+    private final int items;
+    private final int grain;
+    private final int chunks;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ChunkQueue(int items, int grain) {
+        this.items = items;
+        this.grain = Math.max(1, grain);
+        this.chunks = Math.ceilDiv(items, this.grain);
+    }
+
+    int chunks() {
+        return chunks;
+    }
+
+    /** Leaves the chunks nobody has claimed yet unclaimed; chunks already running finish. */
+    void cancel() {
+        next.set(chunks);
+    }
+
+    /** Runs chunks until none are left. */
+    void drain(ExecutionStrategy.RangeTask task) {
+        int c;
+        while ((c = next.getAndIncrement()) < chunks) {
+            int from = c * grain;
+            task.run(from, Math.min(items, from + grain));
+        }
+    }
+}
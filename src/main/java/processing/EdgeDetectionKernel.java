@@ -0,0 +1,60 @@
+package processing;
+
+// 8-neighbour Laplacian on RGB (centre 8, neighbours -1), clamped to [0, 255]; alpha taken
+// from the centre pixel. The one-pixel border is left transparent black.
+public final class EdgeDetectionKernel implements ImageProcessor {
+    @Override
+    public void processRegion(ImageBuffer src, ImageBuffer dst, int x0, int y0, int x1, int y1) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int xStart = Math.max(x0, 1);
+        int xEnd = Math.min(x1, w - 1);
+        for (int y = y0; y < y1; y++) {
+            int row = y * w;
+            if (y == 0 || y == h - 1) {
+                java.util.Arrays.fill(out, row + x0, row + x1, 0);
+                continue;
+            }
+            if (x0 == 0) out[row] = 0;
+            for (int x = xStart; x < xEnd; x++) {
+                out[row + x] = laplacian(in, row + x, w);
+            }
+            if (x1 == w && w > 1) out[row + w - 1] = 0;
+        }
+    }
+
+    // Interior pixel at index c of an image w pixels wide
+    static int laplacian(int[] in, int c, int w) {
+        int sumR = 0, sumG = 0, sumB = 0;
+        for (int dy = -w; dy <= w; dy += w) {
+            int i = c + dy;
+            for (int k = i - 1; k <= i + 1; k++) {
+                int p = in[k];
+                sumR += (p >> 16) & 0xff;
+                sumG += (p >> 8) & 0xff;
+                sumB += p & 0xff;
+            }
+        }
+        int p = in[c];
+        // the loop above added the centre with weight 1; the kernel wants 8
+        sumR = 9 * ((p >> 16) & 0xff) - sumR;
+        sumG = 9 * ((p >> 8) & 0xff) - sumG;
+        sumB = 9 * (p & 0xff) - sumB;
+        int r = Math.min(Math.max(sumR, 0), 255);
+        int g = Math.min(Math.max(sumG, 0), 255);
+        int b = Math.min(Math.max(sumB, 0), 255);
+        return (p & 0xff000000) | (r << 16) | (g << 8) | b;
+    }
+
+    @Override
+    public int halo() {
+        return 1;
+    }
+
+    @Override
+    public double estimatedNanosPerPixel() {
+        return 4.0;
+    }
+}
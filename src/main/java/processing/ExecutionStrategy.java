@@ -0,0 +1,28 @@
+package processing;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a range task over work items [0, items), which may be rows or tile indices. Strategies
+ * only decide how the range is chunked and which threads run the chunks; the pixel math lives
+ * in the ImageProcessor kernels.
+ */
+public interface ExecutionStrategy {
+    /** Runs {@code task} over [0, items) in contiguous chunks of at most {@code grain} items. */
+    void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException;
+
+    /** Rows per chunk this strategy uses when running {@code kernel} as full-width row bands. */
+    int rowGrain(ImageProcessor kernel, int width, int height);
+
+    int parallelism();
+
+    /** Distinct threads that actually ran work during the last execute call, where measured. */
+    default int observedParallelism() {
+        return parallelism();
+    }
+
+    @FunctionalInterface
+    interface RangeTask {
+        void run(int from, int to);
+    }
+}
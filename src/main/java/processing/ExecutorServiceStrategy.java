@@ -0,0 +1,45 @@
+package processing;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Up to numThreads workers on the shared fixed thread pool, each claiming chunks until none are left
+public final class ExecutorServiceStrategy implements ExecutionStrategy {
+    private final WorkerPools pools;
+    private final int numThreads;
+
+    public ExecutorServiceStrategy(WorkerPools pools, int numThreads) {
+        this.pools = pools;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException {
+        ExecutorService executor = pools.executor(numThreads);
+        ChunkQueue queue = new ChunkQueue(items, grain);
+        int workers = Math.min(numThreads, queue.chunks());
+        Future<?>[] futures = new Future<?>[workers];
+        for (int t = 0; t < workers; t++) {
+            futures[t] = executor.submit(() -> queue.drain(task));
+        }
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Stop the other workers at their next chunk instead of running the rest for nothing
+            queue.cancel();
+            throw e;
+        }
+    }
+
+    // One band per thread
+    @Override
+    public int rowGrain(ImageProcessor kernel, int width, int height) {
+        return Math.max(1, Math.ceilDiv(height, numThreads));
+    }
+
+    @Override
+    public int parallelism() {
+        return numThreads;
+    }
+}
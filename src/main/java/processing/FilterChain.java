@@ -0,0 +1,90 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * An ordered list of filters applied one after another, e.g. grayscale, then blur, then edge
+ * detection. A chain of several stages runs as one fused pass (see {@link FusedKernel}), so no
+ * full-size intermediate image is ever allocated. A single filter is a chain of one stage.
+ */
+public record FilterChain(List<Stage> stages) {
+    /** One filter and its options; options a filter ignores are normalised away, so equal stages compare equal. */
+    public record Stage(FilterType filter, FilterOptions options) {
+        public Stage {
+            if (filter != FilterType.BLUR) options = FilterOptions.DEFAULT;
+        }
+
+        @Override
+        public String toString() {
+            String name = filter.name().charAt(0) + filter.name().substring(1).toLowerCase(Locale.ROOT).replace('_', ' ');
+            return filter == FilterType.BLUR ? name + " (" + options.blurRadius() + " px)" : name;
+        }
+    }
+
+    public FilterChain {
+        if (stages.isEmpty()) throw new IllegalArgumentException("A filter chain needs at least one stage");
+        stages = List.copyOf(stages);
+    }
+
+    public static FilterChain of(FilterType filter, FilterOptions options) {
+        return new FilterChain(List.of(new Stage(filter, options)));
+    }
+
+    public FilterChain then(FilterType filter, FilterOptions options) {
+        List<Stage> longer = new ArrayList<>(stages);
+        longer.add(new Stage(filter, options));
+        return new FilterChain(longer);
+    }
+
+    /** Parses comma-separated stages, each a filter name with an optional ":radius", e.g. "grayscale,blur:4,edge_detection". */
+    public static FilterChain parse(String spec) {
+        List<Stage> parsed = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String s = part.trim();
+            if (s.isEmpty()) continue;
+            FilterOptions options = FilterOptions.DEFAULT;
+            int colon = s.indexOf(':');
+            if (colon >= 0) {
+                options = new FilterOptions(Integer.parseInt(s.substring(colon + 1).trim()));
+                s = s.substring(0, colon).trim();
+            }
+            FilterType filter;
+            try {
+                filter = FilterType.valueOf(s.toUpperCase(Locale.ROOT).replace(' ', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown filter in chain: " + s);
+            }
+            parsed.add(new Stage(filter, options));
+        }
+        return new FilterChain(parsed);
+    }
+
+    /** The chain with each stage's options scaled for an image {@code factor} times smaller. */
+    public FilterChain downscaled(int factor) {
+        return new FilterChain(stages.stream().map(s -> new Stage(s.filter(), s.options().downscaled(factor))).toList());
+    }
+
+    /** The kernel passes for this chain: the stage's own passes for one stage, else one fused pass. */
+    public List<ImageProcessor> passes(KernelMode mode) {
+        List<ImageProcessor> all = new ArrayList<>();
+        for (Stage stage : stages) {
+            all.addAll(Kernels.passes(stage.filter(), stage.options(), mode));
+        }
+        return all.size() == 1 ? all : List.of(new FusedKernel(all));
+    }
+
+    /** A short file-name-safe identifier, e.g. "grayscale+blur4+edge_detection". */
+    public String id() {
+        return stages.stream()
+            .map(s -> s.filter().name().toLowerCase(Locale.ROOT) + (s.filter() == FilterType.BLUR ? s.options().blurRadius() : ""))
+            .collect(Collectors.joining("+"));
+    }
+
+    @Override
+    public String toString() {
+        return stages.stream().map(Stage::toString).collect(Collectors.joining(" -> "));
+    }
+}
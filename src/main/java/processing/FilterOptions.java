@@ -0,0 +1,19 @@
+package processing;
+
+/** Tunable filter parameters; filters that don't use a parameter ignore it. */
+public record FilterOptions(int blurRadius) {
+    public static final int MIN_BLUR_RADIUS = 1;
+    public static final int MAX_BLUR_RADIUS = 100;
+    public static final FilterOptions DEFAULT = new FilterOptions(2);
+
+    public FilterOptions {
+        if (blurRadius < MIN_BLUR_RADIUS || blurRadius > MAX_BLUR_RADIUS) {
+            throw new IllegalArgumentException("Blur radius must be between " + MIN_BLUR_RADIUS + " and " + MAX_BLUR_RADIUS);
+        }
+    }
+
+    /** Options that give about the same look on an image {@code factor} times smaller. */
+    public FilterOptions downscaled(int factor) {
+        return new FilterOptions(Math.max(MIN_BLUR_RADIUS, Math.round((float) blurRadius / factor)));
+    }
+}
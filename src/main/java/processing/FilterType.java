@@ -1,4 +1,4 @@
-package gui;
+package processing;
 
 public enum FilterType {
     GRAYSCALE,
@@ -0,0 +1,66 @@
+package processing;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Recursive halving of the range until a leaf is at most grain items; the row grain adapts to
+// the image size, the kernel's cost and the pool's parallelism (see SplitPolicy)
+public final class ForkJoinStrategy implements ExecutionStrategy {
+    private final WorkerPools pools;
+    private final int numThreads;
+
+    public ForkJoinStrategy(WorkerPools pools, int numThreads) {
+        this.pools = pools;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException {
+        AtomicBoolean stopped = new AtomicBoolean();
+        // Waiting on the submitted task, unlike invoke(), can be interrupted
+        ForkJoinTask<Void> root = pools.forkJoinPool(numThreads)
+            .submit(new RangeAction(task, Math.max(1, grain), 0, items, stopped));
+        try {
+            root.get();
+        } catch (InterruptedException | ExecutionException e) {
+            stopped.set(true);
+            throw e;
+        }
+    }
+
+    @Override
+    public int rowGrain(ImageProcessor kernel, int width, int height) {
+        return SplitPolicy.rowGrain(kernel, width, height, numThreads);
+    }
+
+    @Override
+    public int parallelism() {
+        return numThreads;
+    }
+
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Fork/join tasks are never serialized
+        private final transient RangeTask task;
+        private final int grain;
+        private final int from, to;
+        private final AtomicBoolean stopped;
+        RangeAction(RangeTask task, int grain, int from, int to, AtomicBoolean stopped) {
+            this.task = task; this.grain = grain; this.from = from; this.to = to; this.stopped = stopped;
+        }
+        @Override
+        protected void compute() {
+            if (stopped.get()) return;
+            if (to - from <= grain) {
+                task.run(from, to);
+            } else {
+                int mid = (from + to) / 2;
+                invokeAll(new RangeAction(task, grain, from, mid, stopped),
+                          new RangeAction(task, grain, mid, to, stopped));
+            }
+        }
+    }
+}
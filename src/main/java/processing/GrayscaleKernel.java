@@ -0,0 +1,31 @@
+package processing;
+
+// Unweighted (r + g + b) / 3 average, alpha preserved
+public final class GrayscaleKernel implements ImageProcessor {
+    @Override
+    public void processRegion(ImageBuffer src, ImageBuffer dst, int x0, int y0, int x1, int y1) {
+        int w = src.getWidth();
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for (int y = y0; y < y1; y++) {
+            int from = y * w + x0;
+            int to = y * w + x1;
+            for (int i = from; i < to; i++) {
+                out[i] = gray(in[i]);
+            }
+        }
+    }
+
+    static int gray(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        int gray = (r + g + b) / 3;
+        return (rgb & 0xff000000) | (gray << 16) | (gray << 8) | gray;
+    }
+
+    @Override
+    public double estimatedNanosPerPixel() {
+        return 0.5;
+    }
+}
@@ -0,0 +1,80 @@
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Packed, non-premultiplied ARGB pixels stored row-major in a plain {@code int[]}
+ * (index = y * width + x). Filters read and write this array directly instead of
+ * going through {@link BufferedImage#getRGB}/{@link BufferedImage#setRGB}.
+ */
+public final class ImageBuffer {
+    private static final int[] ARGB_MASKS = {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000};
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public ImageBuffer(int width, int height, int[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array too small for " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public static ImageBuffer allocate(int width, int height) {
+        return new ImageBuffer(width, height, new int[width * height]);
+    }
+
+    /**
+     * Wraps the backing array of a TYPE_INT_ARGB image without copying. Any other
+     * layout is converted once with a bulk getRGB, which applies exactly the same
+     * ColorModel conversion the per-pixel getRGB would.
+     */
+    public static ImageBuffer of(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[] direct = directArgb(image);
+        if (direct != null) {
+            return new ImageBuffer(w, h, direct);
+        }
+        int[] pixels = new int[w * h];
+        image.getRGB(0, 0, w, h, pixels, 0, w);
+        return new ImageBuffer(w, h, pixels);
+    }
+
+    private static int[] directArgb(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) return null;
+        WritableRaster raster = image.getRaster();
+        if (!(raster.getDataBuffer() instanceof DataBufferInt db)) return null;
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm)) return null;
+        if (sm.getScanlineStride() != image.getWidth() || db.getOffset() != 0 || db.getNumBanks() != 1) return null;
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) return null;
+        return db.getData();
+    }
+
+    /** A TYPE_INT_ARGB image that shares this buffer's array. */
+    public BufferedImage toBufferedImage() {
+        DataBufferInt db = new DataBufferInt(pixels, width * height);
+        WritableRaster raster = Raster.createPackedRaster(db, width, height, width, ARGB_MASKS, null);
+        return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+}
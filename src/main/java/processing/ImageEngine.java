@@ -0,0 +1,101 @@
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/** Headless entry point: runs a filter's kernel passes under the chosen execution strategy. */
+public final class ImageEngine {
+    private ImageEngine() {}
+
+    public static ImageBuffer apply(ImageBuffer input, FilterType filter, ExecutionStrategy strategy)
+            throws InterruptedException, ExecutionException {
+        return apply(input, Kernels.passes(filter), strategy);
+    }
+
+    public static ImageBuffer apply(ImageBuffer input, FilterType filter, FilterOptions options, ExecutionStrategy strategy)
+            throws InterruptedException, ExecutionException {
+        return apply(input, Kernels.passes(filter, options), strategy);
+    }
+
+    public static ImageBuffer apply(ImageBuffer input, FilterType filter, FilterOptions options, ExecutionStrategy strategy,
+                                    TileScheduler scheduler) throws InterruptedException, ExecutionException {
+        return apply(input, Kernels.passes(filter, options), strategy, scheduler);
+    }
+
+    public static ImageBuffer apply(ImageBuffer input, List<ImageProcessor> passes, ExecutionStrategy strategy)
+            throws InterruptedException, ExecutionException {
+        return apply(input, passes, strategy, TileScheduler.rowBands());
+    }
+
+    public static ImageBuffer apply(ImageBuffer input, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                                    TileScheduler scheduler) throws InterruptedException, ExecutionException {
+        return apply(input, passes, strategy, scheduler, Progress.NONE);
+    }
+
+    /** Reports to {@code progress} as bands finish and stops with a CancellationException once it is cancelled. */
+    public static ImageBuffer apply(ImageBuffer input, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                                    TileScheduler scheduler, Progress progress) throws InterruptedException, ExecutionException {
+        return apply(input, passes, strategy, scheduler, progress, null);
+    }
+
+    /**
+     * Like the other overloads, but the result is leased from {@code pool}; hand it back with
+     * {@link PixelPool#release(ImageBuffer)} once it has been used. A null pool allocates the result.
+     * Intermediates between passes always come from the shared pool and go back to it.
+     */
+    public static ImageBuffer apply(ImageBuffer input, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                                    TileScheduler scheduler, Progress progress, PixelPool pool)
+            throws InterruptedException, ExecutionException {
+        progress.expect((long) input.getWidth() * input.getHeight() * passes.size());
+        PixelPool intermediates = PixelPool.shared();
+        int w = input.getWidth();
+        int h = input.getHeight();
+        ImageBuffer current = input;
+        for (int i = 0; i < passes.size(); i++) {
+            boolean last = i == passes.size() - 1;
+            ImageBuffer dst = !last ? intermediates.lease(w, h)
+                : pool != null ? pool.lease(w, h) : ImageBuffer.allocate(w, h);
+            // On failure nothing is released: workers of a cancelled run may still be writing
+            scheduler.run(passes.get(i), current, dst, strategy, 0, h, progress);
+            if (current != input) intermediates.release(current);
+            current = dst;
+        }
+        return current;
+    }
+
+    /**
+     * Filters an off-heap image strip by strip; the result has the same kind as the input and
+     * intermediate passes are released as soon as the next pass has consumed them.
+     */
+    public static OffHeapImage apply(OffHeapImage input, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                                     TileScheduler scheduler) throws InterruptedException, ExecutionException, IOException {
+        return apply(input, passes, strategy, scheduler, Progress.NONE);
+    }
+
+    public static OffHeapImage apply(OffHeapImage input, List<ImageProcessor> passes, ExecutionStrategy strategy,
+                                     TileScheduler scheduler, Progress progress)
+            throws InterruptedException, ExecutionException, IOException {
+        progress.expect((long) input.getWidth() * input.getHeight() * passes.size());
+        OffHeapImage current = input;
+        for (ImageProcessor pass : passes) {
+            OffHeapImage dst = current.allocateLike();
+            try {
+                StripProcessor.run(pass, current, dst, strategy, scheduler, progress);
+            } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                dst.close();
+                throw e;
+            } finally {
+                if (current != input) current.close();
+            }
+            current = dst;
+        }
+        return current;
+    }
+
+    public static BufferedImage apply(BufferedImage input, FilterType filter, FilterOptions options, StrategyType strategy, int numThreads)
+            throws InterruptedException, ExecutionException {
+        return apply(ImageBuffer.of(input), filter, options, strategy.create(numThreads)).toBufferedImage();
+    }
+}
@@ -0,0 +1,254 @@
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Decoding and encoding between image files and ImageBuffer. The overloads taking an
+ * ExecutionStrategy spread the work over its threads: decoding by region (see RegionDecoder) and
+ * PNG encoding by strip (see PngEncoder). JPEG and the other formats are encoded by ImageIO on
+ * the calling thread.
+ */
+public final class ImageFiles {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int COPY_PIXELS = 1 << 20;
+    private static final ExecutionStrategy SEQUENTIAL = new SequentialStrategy();
+
+    @FunctionalInterface
+    interface IoRange {
+        void run(int from, int to) throws IOException;
+    }
+
+    private ImageFiles() {}
+
+    public static ImageBuffer read(Path file) throws IOException {
+        return read(file, SEQUENTIAL);
+    }
+
+    public static ImageBuffer read(Path file, ExecutionStrategy strategy) throws IOException {
+        try (RegionDecoder decoder = RegionDecoder.open(file)) {
+            return read(decoder, strategy);
+        }
+    }
+
+    /**
+     * Decodes an encoded image held in memory. Images over {@code maxPixels} are refused from
+     * their header, before any pixel memory is allocated.
+     */
+    public static ImageBuffer read(ByteBuffer data, ExecutionStrategy strategy, long maxPixels) throws IOException {
+        try (RegionDecoder decoder = RegionDecoder.of(data)) {
+            long pixels = (long) decoder.width() * decoder.height();
+            if (pixels > maxPixels) {
+                throw new ImageTooLargeException(decoder.width() + "x" + decoder.height() + " is over the limit of " + maxPixels + " pixels");
+            }
+            return read(decoder, strategy);
+        }
+    }
+
+    private static ImageBuffer read(RegionDecoder decoder, ExecutionStrategy strategy) throws IOException {
+        int w = decoder.width();
+        int h = decoder.height();
+        if ((long) w * h > Integer.MAX_VALUE) {
+            throw new ImageTooLargeException("Too many pixels for a heap image: " + w + "x" + h + " (use off-heap storage)");
+        }
+        int[] pixels = new int[w * h];
+        decoder.decode(strategy, (image, imageY0, y0, y1) ->
+            image.getRGB(0, y0 - imageY0, w, y1 - y0, pixels, y0 * w, w));
+        return new ImageBuffer(w, h, pixels);
+    }
+
+    public static OffHeapImage readOffHeap(Path file, OffHeapImage.Kind kind, Path scratchDir) throws IOException {
+        return readOffHeap(file, kind, scratchDir, SEQUENTIAL);
+    }
+
+    /**
+     * Decodes into off-heap storage. The decoder still produces heap images, but each becomes
+     * garbage as soon as it has been copied, so only decoding needs the heap headroom.
+     */
+    public static OffHeapImage readOffHeap(Path file, OffHeapImage.Kind kind, Path scratchDir,
+                                           ExecutionStrategy strategy) throws IOException {
+        try (RegionDecoder decoder = RegionDecoder.open(file)) {
+            int w = decoder.width();
+            OffHeapImage target = OffHeapImage.allocate(kind, w, decoder.height(), scratchDir);
+            try {
+                decoder.decode(strategy, (image, imageY0, y0, y1) -> {
+                    int rows = Math.max(1, Math.min(y1 - y0, COPY_PIXELS / w));
+                    int[] strip = new int[rows * w];
+                    for (int y = y0; y < y1; y += rows) {
+                        int n = Math.min(rows, y1 - y);
+                        image.getRGB(0, y - imageY0, w, n, strip, 0, w);
+                        target.writeRows(y, y + n, strip, 0);
+                    }
+                });
+                return target;
+            } catch (IOException | RuntimeException e) {
+                target.close();
+                throw e;
+            }
+        }
+    }
+
+    public static void write(ImageBuffer image, String format, Path file) throws IOException {
+        write(image, format, file, WriteOptions.DEFAULT, SEQUENTIAL);
+    }
+
+    public static void write(ImageBuffer image, String format, Path file, WriteOptions options,
+                             ExecutionStrategy strategy) throws IOException {
+        write(pngEncoder(image, options, strategy), encodable(image, format), format, file, options);
+    }
+
+    /** Encodes to {@code out}, which is left open. */
+    public static void write(ImageBuffer image, String format, OutputStream out, WriteOptions options,
+                             ExecutionStrategy strategy) throws IOException {
+        encode(pngEncoder(image, options, strategy), encodable(image, format), format, options, out);
+    }
+
+    private static PngEncoder pngEncoder(ImageBuffer image, WriteOptions options, ExecutionStrategy strategy) {
+        int w = image.getWidth();
+        int[] pixels = image.getPixels();
+        return new PngEncoder((y0, y1, dst, offset) ->
+            System.arraycopy(pixels, y0 * w, dst, offset, (y1 - y0) * w), w, image.getHeight(), options.pngLevel(), strategy);
+    }
+
+    /** Encodes straight from off-heap storage. */
+    public static void write(OffHeapImage image, String format, Path file) throws IOException {
+        write(image, format, file, WriteOptions.DEFAULT, SEQUENTIAL);
+    }
+
+    public static void write(OffHeapImage image, String format, Path file, WriteOptions options,
+                             ExecutionStrategy strategy) throws IOException {
+        PngEncoder png = new PngEncoder(image::readRows, image.getWidth(), image.getHeight(), options.pngLevel(), strategy);
+        // Only ImageIO's encoders need the DataBuffer view, which stops at 2^31 pixels
+        BufferedImage view = isPng(format) ? null : encodable(image, format);
+        write(png, view, format, file, options);
+    }
+
+    private static void write(PngEncoder png, BufferedImage image, String format, Path file, WriteOptions options)
+            throws IOException {
+        boolean written = false;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE)) {
+            encode(png, image, format, options, out);
+            written = true;
+        } finally {
+            // Don't leave a truncated file behind
+            if (!written) Files.deleteIfExists(file);
+        }
+    }
+
+    private static void encode(PngEncoder png, BufferedImage image, String format, WriteOptions options,
+                               OutputStream out) throws IOException {
+        if (isPng(format)) {
+            png.write(out, true);
+        } else {
+            encode(image, format, options, out);
+        }
+    }
+
+    /** Encodes through ImageIO, applying the options' JPEG quality or PNG level. */
+    static void encode(BufferedImage image, String format, WriteOptions options, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) throw new IOException("No ImageIO writer for format: " + format);
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && (isPng(format) || isJpeg(format))) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                // ImageIO's PNG writer deflates at level 9 - round(9 * quality)
+                param.setCompressionQuality(isPng(format) ? (9 - options.pngLevel()) / 9f : options.jpegQuality());
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /** Runs {@code task} over [0, items) on {@code strategy}, one item per chunk, rethrowing its IOExceptions. */
+    static void execute(ExecutionStrategy strategy, int items, IoRange task) throws IOException {
+        try {
+            strategy.execute(items, 1, (from, to) -> {
+                try {
+                    task.run(from, to);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error error) throw error;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while coding an image");
+        }
+    }
+
+    private static boolean isPng(String format) {
+        return format.equalsIgnoreCase("png");
+    }
+
+    private static boolean isJpeg(String format) {
+        return format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+    }
+
+    /**
+     * Formats without an alpha channel (JPEG, BMP) need an opaque image; this view reuses the
+     * same int[] with an RGB colour model, so no pixels are copied either way.
+     */
+    static BufferedImage encodable(ImageBuffer image, String format) {
+        if (supportsAlpha(format)) {
+            return image.toBufferedImage();
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        return opaqueView(new DataBufferInt(image.getPixels(), w * h), w, h);
+    }
+
+    static BufferedImage encodable(OffHeapImage image, String format) {
+        if (supportsAlpha(format)) {
+            return image.toBufferedImage();
+        }
+        return opaqueView(image.dataBuffer(), image.getWidth(), image.getHeight());
+    }
+
+    private static BufferedImage opaqueView(DataBuffer db, int w, int h) {
+        DirectColorModel rgb = new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff);
+        WritableRaster raster = Raster.createPackedRaster(db, w, h, w, rgb.getMasks(), null);
+        return new BufferedImage(rgb, raster, false, null);
+    }
+
+    public static boolean supportsAlpha(String format) {
+        String f = format.toLowerCase(Locale.ROOT);
+        return !(f.equals("jpg") || f.equals("jpeg") || f.equals("bmp"));
+    }
+
+    public static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
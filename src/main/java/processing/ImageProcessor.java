@@ -0,0 +1,34 @@
+package processing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A filter kernel that computes the output pixels of one region, [x0, x1) x [y0, y1), from
+ * the full source buffer. Kernels never write outside their region, so a TileScheduler can
+ * run disjoint regions (row bands or 2D tiles) of the same kernel concurrently.
+ */
+@FunctionalInterface
+public interface ImageProcessor {
+    void processRegion(ImageBuffer src, ImageBuffer dst, int x0, int y0, int x1, int y1);
+
+    default void processRows(ImageBuffer src, ImageBuffer dst, int yStart, int yEnd) {
+        processRegion(src, dst, 0, yStart, src.getWidth(), yEnd);
+    }
+
+    /** How many pixels beyond its region the kernel reads on each side. */
+    default int halo() {
+        return 0;
+    }
+
+    /** Rough single-thread cost, used to size parallel work until SplitCalibration has measured it. */
+    default double estimatedNanosPerPixel() {
+        return 1.0;
+    }
+
+    default BufferedImage process(BufferedImage input) {
+        ImageBuffer src = ImageBuffer.of(input);
+        ImageBuffer dst = ImageBuffer.allocate(src.getWidth(), src.getHeight());
+        processRows(src, dst, 0, src.getHeight());
+        return dst.toBufferedImage();
+    }
+}
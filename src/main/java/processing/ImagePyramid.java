@@ -0,0 +1,78 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Successively halved copies of an image for previews: level k is 2^k times smaller on each
+ * side, every pixel the average of a 2x2 block one level up (edge pixels are repeated for odd
+ * sizes). Levels are built on first use and kept. Thread-safe.
+ */
+public final class ImagePyramid {
+    /** Halving stops once the longer side would drop below this. */
+    static final int MIN_SIDE = 64;
+
+    private final ImageBuffer base;
+    private final List<ImageBuffer> levels = new ArrayList<>();
+
+    public ImagePyramid(ImageBuffer base) {
+        this.base = base;
+        levels.add(base);
+    }
+
+    public ImageBuffer base() {
+        return base;
+    }
+
+    /** Level {@code k}, or the smallest level if the pyramid doesn't go that deep. */
+    public synchronized ImageBuffer level(int k) {
+        while (levels.size() <= k) {
+            ImageBuffer last = levels.get(levels.size() - 1);
+            if (Math.max(last.getWidth(), last.getHeight()) / 2 < MIN_SIDE) break;
+            levels.add(halve(last));
+        }
+        return levels.get(Math.min(k, levels.size() - 1));
+    }
+
+    /** Index of the smallest level; builds every level. */
+    public synchronized int depth() {
+        level(Integer.MAX_VALUE);
+        return levels.size() - 1;
+    }
+
+    /**
+     * The smallest level that still has at least one pixel per screen pixel when the base image
+     * is shown at {@code scale} (screen pixels per image pixel).
+     */
+    public static int levelFor(double scale) {
+        int k = 0;
+        while (scale > 0 && scale * (2 << k) <= 1.0) {
+            k++;
+        }
+        return k;
+    }
+
+    static ImageBuffer halve(ImageBuffer src) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        int hw = Math.max(1, (w + 1) / 2);
+        int hh = Math.max(1, (h + 1) / 2);
+        int[] in = src.getPixels();
+        int[] out = new int[hw * hh];
+        for (int y = 0; y < hh; y++) {
+            int r0 = 2 * y * w;
+            int r1 = Math.min(2 * y + 1, h - 1) * w;
+            for (int x = 0; x < hw; x++) {
+                int x0 = 2 * x;
+                int x1 = Math.min(x0 + 1, w - 1);
+                int a = in[r0 + x0], b = in[r0 + x1], c = in[r1 + x0], d = in[r1 + x1];
+                // Two channels per int: four 8-bit values sum to at most 1020, so halves never carry
+                int rb = (a & 0x00ff00ff) + (b & 0x00ff00ff) + (c & 0x00ff00ff) + (d & 0x00ff00ff) + 0x00020002;
+                int ag = ((a >>> 8) & 0x00ff00ff) + ((b >>> 8) & 0x00ff00ff)
+                    + ((c >>> 8) & 0x00ff00ff) + ((d >>> 8) & 0x00ff00ff) + 0x00020002;
+                out[y * hw + x] = ((rb >>> 2) & 0x00ff00ff) | (((ag >>> 2) & 0x00ff00ff) << 8);
+            }
+        }
+        return new ImageBuffer(hw, hh, out);
+    }
+}
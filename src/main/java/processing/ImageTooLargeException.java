@@ -0,0 +1,12 @@
+package processing;
+
+import java.io.IOException;
+
+/** An image with more pixels than the caller accepts, or than a heap ImageBuffer can hold. */
+public class ImageTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package processing;
+
+/** Which implementation of the filter kernels to run. Both produce bit-identical output. */
+public enum KernelMode {
+    SCALAR,
+    /** Vector API kernels; falls back to SCALAR where SIMD isn't usable (see Kernels.isSimdAvailable). */
+    SIMD
+}
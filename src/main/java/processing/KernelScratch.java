@@ -0,0 +1,45 @@
+package processing;
+
+/**
+ * Working arrays for region kernels, cached per worker thread, so a kernel's rows and sums are
+ * reused without taking the shared PixelPool's lock on every region. Each kernel holds its own
+ * slots, so a fused kernel and the stages it runs can hold theirs at once. Virtual threads live
+ * for one chunk, and arrays longer than MAX_CACHED_LENGTH would stay pinned to a thread, so both
+ * lease from the shared pool instead. An array is the caller's until it is released to the same slot.
+ */
+final class KernelScratch {
+    static final int RING = 0;
+    static final int SUM_0 = 1;
+    static final int SUM_1 = 2;
+    static final int SUM_2 = 3;
+    static final int SUM_3 = 4;
+    static final int WINDOW_A = 5;
+    static final int WINDOW_B = 6;
+    private static final int SLOTS = 7;
+    // 4 MB per array
+    private static final int MAX_CACHED_LENGTH = 1 << 20;
+
+    private static final ThreadLocal<int[][]> CACHE = ThreadLocal.withInitial(() -> new int[SLOTS][]);
+
+    private KernelScratch() {}
+
+    /** An array of at least {@code minLength} ints, with unspecified contents. */
+    static int[] lease(int slot, int minLength) {
+        if (minLength > MAX_CACHED_LENGTH || Thread.currentThread().isVirtual()) {
+            return PixelPool.shared().lease(minLength);
+        }
+        int[][] arrays = CACHE.get();
+        int[] array = arrays[slot];
+        if (array == null || array.length < minLength) {
+            array = new int[minLength];
+            arrays[slot] = array;
+        }
+        return array;
+    }
+
+    static void release(int slot, int[] array) {
+        if (Thread.currentThread().isVirtual() || CACHE.get()[slot] != array) {
+            PixelPool.shared().release(array);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package processing;
+
+import java.util.List;
+
+/** Maps each FilterType to the kernel passes that implement it. */
+public final class Kernels {
+    private Kernels() {}
+
+    public static List<ImageProcessor> passes(FilterType filter) {
+        return passes(filter, FilterOptions.DEFAULT);
+    }
+
+    public static List<ImageProcessor> passes(FilterType filter, FilterOptions options) {
+        return passes(filter, options, KernelMode.SCALAR);
+    }
+
+    /** SIMD requests quietly fall back to the scalar kernels when the Vector API isn't usable. */
+    public static List<ImageProcessor> passes(FilterType filter, FilterOptions options, KernelMode mode) {
+        if (mode == KernelMode.SIMD && isSimdAvailable()) {
+            return simdPasses(filter, options);
+        }
+        switch (filter) {
+            case GRAYSCALE:
+                return List.of(new GrayscaleKernel());
+            case BLUR:
+                // Separable box blur, both passes fused into one kernel
+                return List.of(new BoxBlurKernel(options.blurRadius()));
+            case EDGE_DETECTION:
+                return List.of(new EdgeDetectionKernel());
+            default:
+                throw new IllegalArgumentException("Unknown filter");
+        }
+    }
+
+    /**
+     * True when the Vector API module is present (--add-modules jdk.incubator.vector) and the
+     * CPU offers vectors of at least four ints.
+     */
+    public static boolean isSimdAvailable() {
+        return SimdSupport.isAvailable();
+    }
+
+    private static List<ImageProcessor> simdPasses(FilterType filter, FilterOptions options) {
+        switch (filter) {
+            case GRAYSCALE:
+                return List.of(new SimdGrayscaleKernel());
+            case BLUR:
+                return List.of(new SimdBoxBlurKernel(options.blurRadius()));
+            case EDGE_DETECTION:
+                return List.of(new SimdEdgeDetectionKernel());
+            default:
+                throw new IllegalArgumentException("Unknown filter");
+        }
+    }
+}
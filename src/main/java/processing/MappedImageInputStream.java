@@ -0,0 +1,43 @@
+package processing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An ImageInputStream over a ByteBuffer, usually a memory-mapped file. Reads use absolute
+ * positions, so any number of streams, one per decoding thread, can share the same buffer.
+ */
+final class MappedImageInputStream extends ImageInputStreamImpl {
+    private final ByteBuffer buffer;
+
+    MappedImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buffer.limit()) return -1;
+        return buffer.get((int) streamPos++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+        bitOffset = 0;
+        if (len == 0) return 0;
+        int n = (int) Math.min(len, buffer.limit() - streamPos);
+        if (n <= 0) return -1;
+        buffer.get((int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
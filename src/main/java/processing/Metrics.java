@@ -0,0 +1,522 @@
+package processing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Process-wide timings for the hot path. Each stage an image goes through (decode, convert,
+ * filter, convert back, encode) feeds a latency histogram and a pixel count, so throughput in
+ * MP/s falls out per stage. A {@link Job} follows one image: a metered strategy adds every
+ * range's time to its worker's busy total, which shows how evenly the bands were spread, and
+ * heap allocation is read from each thread's allocation counter before and after its share of
+ * the work. Recording costs two clock reads and a few uncontended adds per stage or range,
+ * never anything inside the kernels' loops.
+ * <p>
+ * Stages and jobs are also committed as JFR events (category "Image Processor") when a
+ * recording has them enabled, e.g. {@code -XX:StartFlightRecording}.
+ */
+public final class Metrics {
+    public enum Stage {
+        DECODE("decode"), CONVERT("convert"), FILTER("filter"), CONVERT_BACK("convert back"), ENCODE("encode");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Metrics SHARED = new Metrics();
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final Map<Stage, StageStats> stages = new EnumMap<>(Stage.class);
+    // Strategy -> worker thread -> busy nanoseconds in the filter stage
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, LongAdder>> busy = new ConcurrentHashMap<>();
+    private final LongAdder jobs = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private volatile JobSummary lastJob;
+
+    public Metrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageStats());
+        }
+    }
+
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    /** Starts following one image of {@code pixels} filtered by {@code strategy}, a label such as "ForkJoin x8". */
+    public Job start(String strategy, long pixels) {
+        Job job = new Job();
+        job.strategy(strategy);
+        job.pixels(pixels);
+        return job;
+    }
+
+    /** "ForkJoin x8", or just "Sequential". */
+    public static String strategyLabel(StrategyType type, int threads) {
+        return type == StrategyType.SEQUENTIAL ? type.getLabel() : type.getLabel() + " x" + threads;
+    }
+
+    /** Starts following an image whose size and strategy aren't known yet, e.g. before it is decoded. */
+    public Job start() {
+        return new Job();
+    }
+
+    /** Times one stage outside of any job; set its pixels before closing it. */
+    public Timer time(Stage stage) {
+        return new Timer(null, stage);
+    }
+
+    public void reset() {
+        stages.values().forEach(StageStats::reset);
+        busy.clear();
+        jobs.reset();
+        allocated.reset();
+        lastJob = null;
+    }
+
+    public Snapshot snapshot() {
+        List<StageSummary> stageSummaries = new ArrayList<>();
+        stages.forEach((stage, stats) -> {
+            if (stats.count.sum() > 0) stageSummaries.add(stats.summary(stage));
+        });
+        List<WorkerSummary> workers = new ArrayList<>();
+        new TreeMap<>(busy).forEach((strategy, threads) -> new TreeMap<>(threads).forEach((worker, nanos) ->
+            workers.add(new WorkerSummary(strategy, worker, nanos.sum()))));
+        return new Snapshot(jobs.sum(), allocated.sum(), stageSummaries, workers, lastJob);
+    }
+
+    private void record(Stage stage, long nanos, long pixels) {
+        stages.get(stage).add(nanos, pixels);
+    }
+
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()) {
+            if (!sun.isThreadAllocatedMemoryEnabled()) sun.setThreadAllocatedMemoryEnabled(true);
+            return sun;
+        }
+        return null;
+    }
+
+    // Virtual threads share one name (none), so they are counted as one worker
+    private static String workerName(Thread thread) {
+        if (thread.isVirtual()) return "virtual threads";
+        return thread.getName().isEmpty() ? "thread-" + thread.threadId() : thread.getName();
+    }
+
+    /**
+     * One image from decode to encode. Stages may run on different threads but not at once.
+     * Threads that don't report allocation (virtual threads) add nothing to the allocated bytes.
+     */
+    public final class Job implements AutoCloseable {
+        private volatile String strategy = "unknown";
+        private volatile long pixels;
+        private final JobEvent event = new JobEvent();
+        private final long startNanos = System.nanoTime();
+        private final Map<Stage, Long> stageNanos = new EnumMap<>(Stage.class);
+        private final ConcurrentHashMap<String, LongAdder> workers = new ConcurrentHashMap<>();
+        private final LongAdder jobAllocated = new LongAdder();
+        // The thread running the current stage measures its own allocation, ranges included
+        private volatile Thread stageThread;
+        private boolean closed;
+
+        private Job() {
+            event.begin();
+        }
+
+        /** Sets the strategy label; call it before metering the filter stage. */
+        public void strategy(String strategy) {
+            this.strategy = strategy;
+        }
+
+        public void pixels(long pixels) {
+            this.pixels = pixels;
+        }
+
+        /** Times a stage of this job; it counts the job's pixels unless given others. */
+        public Timer time(Stage stage) {
+            return new Timer(this, stage);
+        }
+
+        /**
+         * Wraps {@code strategy} so the allocation of each range it runs counts towards this job,
+         * and, for the filter stage, so does each worker's busy time.
+         */
+        public ExecutionStrategy meter(Stage stage, ExecutionStrategy strategy) {
+            return new MeteredStrategy(this, stage == Stage.FILTER, strategy);
+        }
+
+        /** Folds this job into the totals and commits its JFR event. */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            long wall = System.nanoTime() - startNanos;
+            String strategy = this.strategy;
+            long pixels = this.pixels;
+            Map<String, Long> busyNanos = new TreeMap<>();
+            workers.forEach((worker, nanos) -> busyNanos.put(worker, nanos.sum()));
+            Map<Stage, Long> timings;
+            synchronized (stageNanos) {
+                timings = new EnumMap<>(stageNanos);
+            }
+            JobSummary summary = new JobSummary(strategy, pixels, wall, timings, busyNanos, jobAllocated.sum());
+            jobs.increment();
+            allocated.add(summary.allocatedBytes());
+            lastJob = summary;
+            event.end();
+            if (event.shouldCommit()) {
+                event.strategy = strategy;
+                event.pixels = pixels;
+                event.filterTime = timings.getOrDefault(Stage.FILTER, 0L);
+                event.allocated = summary.allocatedBytes();
+                event.workers = busyNanos.size();
+                event.imbalance = summary.imbalance();
+                event.commit();
+            }
+        }
+
+        private void addStage(Stage stage, long nanos) {
+            synchronized (stageNanos) {
+                stageNanos.merge(stage, nanos, Long::sum);
+            }
+        }
+
+        private void range(Thread thread, boolean worker, long nanos, long allocatedBytes) {
+            if (worker) {
+                workers.computeIfAbsent(workerName(thread), k -> new LongAdder()).add(nanos);
+                busy.computeIfAbsent(strategy, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(workerName(thread), k -> new LongAdder()).add(nanos);
+            }
+            if (allocatedBytes > 0 && thread != stageThread) jobAllocated.add(allocatedBytes);
+        }
+    }
+
+    /** Times one stage from creation to close; a timer that is never closed records nothing. */
+    public final class Timer implements AutoCloseable {
+        private final Job job;
+        private final Stage stage;
+        private final StageEvent event = new StageEvent();
+        private final long start;
+        private final long allocatedAtStart;
+        private long pixels;
+
+        private Timer(Job job, Stage stage) {
+            this.job = job;
+            this.stage = stage;
+            if (job != null) job.stageThread = Thread.currentThread();
+            this.allocatedAtStart = allocatedBytes();
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /** Pixels this stage handled, for its MP/s. */
+        public void pixels(long pixels) {
+            this.pixels = pixels;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            event.end();
+            long pixels = this.pixels == 0 && job != null ? job.pixels : this.pixels;
+            record(stage, nanos, pixels);
+            if (job != null) {
+                long allocatedAtEnd = allocatedBytes();
+                if (allocatedAtStart >= 0 && allocatedAtEnd >= 0) job.jobAllocated.add(allocatedAtEnd - allocatedAtStart);
+                job.stageThread = null;
+                job.addStage(stage, nanos);
+            }
+            if (event.shouldCommit()) {
+                event.stage = stage.label;
+                event.strategy = job != null ? job.strategy : null;
+                event.pixels = pixels;
+                event.commit();
+            }
+        }
+    }
+
+    private static final class MeteredStrategy implements ExecutionStrategy {
+        private final Job job;
+        private final boolean workers;
+        private final ExecutionStrategy strategy;
+
+        MeteredStrategy(Job job, boolean workers, ExecutionStrategy strategy) {
+            this.job = job;
+            this.workers = workers;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException {
+            strategy.execute(items, grain, (from, to) -> {
+                long allocatedAtStart = allocatedBytes();
+                long start = System.nanoTime();
+                try {
+                    task.run(from, to);
+                } finally {
+                    long nanos = System.nanoTime() - start;
+                    long bytes = allocatedAtStart >= 0 ? allocatedBytes() - allocatedAtStart : 0;
+                    job.range(Thread.currentThread(), workers, nanos, bytes);
+                }
+            });
+        }
+
+        @Override
+        public int rowGrain(ImageProcessor kernel, int width, int height) {
+            return strategy.rowGrain(kernel, width, height);
+        }
+
+        @Override
+        public int parallelism() {
+            return strategy.parallelism();
+        }
+
+        @Override
+        public int observedParallelism() {
+            return strategy.observedParallelism();
+        }
+    }
+
+    // Log-linear buckets: four per power of two, so any percentile is within about 12%
+    private static final class StageStats {
+        private static final int SUB_BUCKETS = 4;
+
+        final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAdder pixels = new LongAdder();
+        final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void add(long nanos, long px) {
+            long n = Math.max(1, nanos);
+            buckets.incrementAndGet(bucket(n));
+            count.increment();
+            totalNanos.add(n);
+            pixels.add(px);
+            max.accumulate(n);
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.reset();
+            totalNanos.reset();
+            pixels.reset();
+            max.reset();
+        }
+
+        static int bucket(long nanos) {
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            if (exponent < 2) return (int) nanos;
+            return exponent * SUB_BUCKETS + (int) ((nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+        }
+
+        // Middle of the bucket
+        static long value(int bucket) {
+            int exponent = bucket / SUB_BUCKETS;
+            if (exponent < 2) return bucket;
+            long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+            return low + (1L << (exponent - 2)) / 2;
+        }
+
+        StageSummary summary(Stage stage) {
+            long[] counts = new long[buckets.length()];
+            long n = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+            return new StageSummary(stage.label, n, totalNanos.sum(), percentile(counts, n, 0.50),
+                percentile(counts, n, 0.90), percentile(counts, n, 0.99), max.get(), pixels.sum());
+        }
+
+        private long percentile(long[] counts, long n, double p) {
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(value(i), max.get());
+            }
+            return max.get();
+        }
+    }
+
+    public record StageSummary(String stage, long count, long totalNanos, long p50Nanos, long p90Nanos,
+                               long p99Nanos, long maxNanos, long pixels) {
+        public double megapixelsPerSecond() {
+            return totalNanos == 0 ? 0 : pixels * 1e3 / totalNanos;
+        }
+    }
+
+    public record WorkerSummary(String strategy, String worker, long busyNanos) {}
+
+    public record JobSummary(String strategy, long pixels, long wallNanos, Map<Stage, Long> stageNanos,
+                             Map<String, Long> workerBusyNanos, long allocatedBytes) {
+        /** Busiest worker's time over the mean; 1 is a perfect spread. */
+        public double imbalance() {
+            if (workerBusyNanos.isEmpty()) return 1;
+            long max = 0;
+            long sum = 0;
+            for (long nanos : workerBusyNanos.values()) {
+                max = Math.max(max, nanos);
+                sum += nanos;
+            }
+            return sum == 0 ? 1 : max * (double) workerBusyNanos.size() / sum;
+        }
+    }
+
+    public record Snapshot(long jobs, long allocatedBytes, List<StageSummary> stages, List<WorkerSummary> workers,
+                           JobSummary lastJob) {
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append(String.format(Locale.ROOT, "{\"jobs\":%d,\"allocatedBytes\":%d,\"stages\":[", jobs, allocatedBytes));
+            for (int i = 0; i < stages.size(); i++) {
+                StageSummary s = stages.get(i);
+                if (i > 0) json.append(',');
+                json.append(String.format(Locale.ROOT,
+                    "{\"stage\":\"%s\",\"count\":%d,\"totalMs\":%.3f,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,"
+                        + "\"maxMs\":%.3f,\"megapixels\":%.3f,\"mpPerSecond\":%.1f}",
+                    s.stage(), s.count(), s.totalNanos() / 1e6, s.p50Nanos() / 1e6, s.p90Nanos() / 1e6,
+                    s.p99Nanos() / 1e6, s.maxNanos() / 1e6, s.pixels() / 1e6, s.megapixelsPerSecond()));
+            }
+            json.append("],\"workers\":[");
+            for (int i = 0; i < workers.size(); i++) {
+                WorkerSummary w = workers.get(i);
+                if (i > 0) json.append(',');
+                json.append(String.format(Locale.ROOT, "{\"strategy\":\"%s\",\"worker\":\"%s\",\"busyMs\":%.3f}",
+                    escape(w.strategy()), escape(w.worker()), w.busyNanos() / 1e6));
+            }
+            json.append(']');
+            if (lastJob != null) {
+                json.append(String.format(Locale.ROOT,
+                    ",\"lastJob\":{\"strategy\":\"%s\",\"megapixels\":%.3f,\"wallMs\":%.3f,\"allocatedBytes\":%d,"
+                        + "\"imbalance\":%.3f,\"stagesMs\":{",
+                    escape(lastJob.strategy()), lastJob.pixels() / 1e6, lastJob.wallNanos() / 1e6,
+                    lastJob.allocatedBytes(), lastJob.imbalance()));
+                json.append(join(lastJob.stageNanos(), Stage::getLabel));
+                json.append("},\"workerBusyMs\":{");
+                json.append(join(lastJob.workerBusyNanos(), Metrics::escape));
+                json.append("}}");
+            }
+            return json.append('}').append(System.lineSeparator()).toString();
+        }
+
+        /** One row per stage and one per worker; columns that don't apply to a row are empty. */
+        public String toCsv() {
+            StringBuilder csv = new StringBuilder(
+                "kind,name,strategy,count,total_ms,p50_ms,p90_ms,p99_ms,max_ms,megapixels,mp_per_s,busy_ms" + System.lineSeparator());
+            for (StageSummary s : stages) {
+                csv.append(String.format(Locale.ROOT, "stage,%s,,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.1f,%n",
+                    s.stage(), s.count(), s.totalNanos() / 1e6, s.p50Nanos() / 1e6, s.p90Nanos() / 1e6,
+                    s.p99Nanos() / 1e6, s.maxNanos() / 1e6, s.pixels() / 1e6, s.megapixelsPerSecond()));
+            }
+            for (WorkerSummary w : workers) {
+                csv.append(String.format(Locale.ROOT, "worker,%s,%s,,,,,,,,,%.3f%n",
+                    csvField(w.worker()), csvField(w.strategy()), w.busyNanos() / 1e6));
+            }
+            csv.append(String.format(Locale.ROOT, "total,jobs,,%d,,,,,,,,%n", jobs));
+            csv.append(String.format(Locale.ROOT, "total,allocated_bytes,,%d,,,,,,,,%n", allocatedBytes));
+            return csv.toString();
+        }
+
+        /** A few lines for a status panel. */
+        public String describe() {
+            StringBuilder text = new StringBuilder();
+            for (StageSummary s : stages) {
+                text.append(String.format(Locale.ROOT, "%-13s %5d x  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  %8.1f MP/s%n",
+                    s.stage(), s.count(), s.p50Nanos() / 1e6, s.p99Nanos() / 1e6, s.maxNanos() / 1e6, s.megapixelsPerSecond()));
+            }
+            if (lastJob != null) {
+                text.append(String.format(Locale.ROOT, "Last job: %s, %.1f MP in %.1f ms, %.1f MB allocated, busiest worker %.2fx the mean%n",
+                    lastJob.strategy(), lastJob.pixels() / 1e6, lastJob.wallNanos() / 1e6,
+                    lastJob.allocatedBytes() / 1e6, lastJob.imbalance()));
+                lastJob.workerBusyNanos().forEach((worker, nanos) ->
+                    text.append(String.format(Locale.ROOT, "  %-20s busy %8.2f ms%n", worker, nanos / 1e6)));
+            }
+            text.append(String.format(Locale.ROOT, "%d job(s), %.1f MB allocated in total", jobs, allocatedBytes / 1e6));
+            return text.toString();
+        }
+
+        private static <K> String join(Map<K, Long> nanos, java.util.function.Function<K, String> name) {
+            Map<String, Long> named = new LinkedHashMap<>();
+            nanos.forEach((k, v) -> named.put(name.apply(k), v));
+            StringBuilder out = new StringBuilder();
+            named.forEach((k, v) -> {
+                if (!out.isEmpty()) out.append(',');
+                out.append(String.format(Locale.ROOT, "\"%s\":%.3f", k, v / 1e6));
+            });
+            return out.toString();
+        }
+
+        private static String csvField(String value) {
+            return value.contains(",") || value.contains("\"") ? '"' + value.replace("\"", "\"\"") + '"' : value;
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    @Name("imageprocessor.Stage")
+    @Label("Image Stage")
+    @Category("Image Processor")
+    private static final class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Strategy")
+        String strategy;
+        @Label("Pixels")
+        long pixels;
+    }
+
+    @Name("imageprocessor.Job")
+    @Label("Image Job")
+    @Category("Image Processor")
+    private static final class JobEvent extends Event {
+        @Label("Strategy")
+        String strategy;
+        @Label("Pixels")
+        long pixels;
+        @Label("Filter Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long filterTime;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+        @Label("Workers")
+        int workers;
+        @Label("Busiest Worker Over Mean")
+        double imbalance;
+    }
+}
@@ -0,0 +1,236 @@
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ARGB pixels in the same layout as ImageBuffer, stored outside the Java heap so images
+ * larger than -Xmx can be processed and the collector never scans or copies them. DIRECT keeps
+ * them in native memory (bounded by -XX:MaxDirectMemorySize, which defaults to -Xmx); MAPPED
+ * keeps them in a memory-mapped scratch file, bounded only by disk. NIO buffers stop at 2 GB,
+ * so rows are spread over slabs of at most SLAB_BYTES.
+ * <p>
+ * Kernels don't read this storage directly: {@link ImageEngine} streams row strips through
+ * small heap windows. Close an image once it is no longer needed to release its memory and
+ * scratch space immediately rather than whenever the buffers are collected.
+ */
+public final class OffHeapImage implements AutoCloseable {
+    public enum Kind { DIRECT, MAPPED }
+
+    static final long SLAB_BYTES = 1L << 30;
+    private static final int[] ARGB_MASKS = {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000};
+    private static final int COPY_PIXELS = 1 << 20;
+
+    private final Kind kind;
+    private final Path scratchDir;
+    private final int width;
+    private final int height;
+    private final int rowsPerSlab;
+    private volatile ByteBuffer[] slabs;
+    private final IntBuffer[] views;
+
+    private OffHeapImage(Kind kind, Path scratchDir, int width, int height, ByteBuffer[] slabs, int rowsPerSlab) {
+        this.kind = kind;
+        this.scratchDir = scratchDir;
+        this.width = width;
+        this.height = height;
+        this.rowsPerSlab = rowsPerSlab;
+        this.slabs = slabs;
+        this.views = new IntBuffer[slabs.length];
+        for (int i = 0; i < slabs.length; i++) {
+            views[i] = slabs[i].order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    /** A zero-filled image; {@code scratchDir} is only used by MAPPED (null means java.io.tmpdir). */
+    public static OffHeapImage allocate(Kind kind, int width, int height, Path scratchDir) throws IOException {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("Image must be at least 1x1");
+        long rowBytes = 4L * width;
+        if (rowBytes > SLAB_BYTES) throw new IllegalArgumentException("Image too wide: " + width);
+        int rowsPerSlab = (int) Math.min(height, SLAB_BYTES / rowBytes);
+        ByteBuffer[] slabs = new ByteBuffer[Math.ceilDiv(height, rowsPerSlab)];
+        if (kind == Kind.DIRECT) {
+            for (int i = 0; i < slabs.length; i++) {
+                slabs[i] = ByteBuffer.allocateDirect((int) (slabRows(i, rowsPerSlab, height) * rowBytes));
+            }
+        } else {
+            Path dir = scratchDir != null ? scratchDir : Path.of(System.getProperty("java.io.tmpdir"));
+            Path file = Files.createTempFile(dir, "imageprocessor-", ".pixels");
+            // The mappings outlive the channel; deleting on close keeps crashed runs from leaving files behind
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                long offset = 0;
+                for (int i = 0; i < slabs.length; i++) {
+                    long size = slabRows(i, rowsPerSlab, height) * rowBytes;
+                    slabs[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+                    offset += size;
+                }
+            } catch (IOException | RuntimeException e) {
+                for (ByteBuffer slab : slabs) {
+                    if (slab != null) Cleaner.free(slab);
+                }
+                throw e;
+            }
+        }
+        return new OffHeapImage(kind, scratchDir, width, height, slabs, rowsPerSlab);
+    }
+
+    /** Another image of the same size and kind. */
+    public OffHeapImage allocateLike() throws IOException {
+        return allocate(kind, width, height, scratchDir);
+    }
+
+    /** Copies a decoded image in a few rows at a time, so no full-size heap array is created. */
+    public static OffHeapImage copyOf(BufferedImage image, Kind kind, Path scratchDir) throws IOException {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        OffHeapImage copy = allocate(kind, w, h, scratchDir);
+        int rows = Math.max(1, Math.min(h, COPY_PIXELS / w));
+        int[] strip = new int[rows * w];
+        for (int y = 0; y < h; y += rows) {
+            int n = Math.min(rows, h - y);
+            image.getRGB(0, y, w, n, strip, 0, w);
+            copy.writeRows(y, y + n, strip, 0);
+        }
+        return copy;
+    }
+
+    private static long slabRows(int slab, int rowsPerSlab, int height) {
+        return Math.min(rowsPerSlab, height - (long) slab * rowsPerSlab);
+    }
+
+    /** Copies rows [y0, y1) into {@code dst} starting at {@code offset}. Safe to call concurrently. */
+    public void readRows(int y0, int y1, int[] dst, int offset) {
+        checkOpen();
+        for (int y = y0; y < y1; ) {
+            int slab = y / rowsPerSlab;
+            int n = Math.min(y1, (slab + 1) * rowsPerSlab) - y;
+            views[slab].get((y - slab * rowsPerSlab) * width, dst, offset, n * width);
+            offset += n * width;
+            y += n;
+        }
+    }
+
+    /** Copies {@code src} from {@code offset} into rows [y0, y1). Safe for disjoint rows concurrently. */
+    public void writeRows(int y0, int y1, int[] src, int offset) {
+        checkOpen();
+        for (int y = y0; y < y1; ) {
+            int slab = y / rowsPerSlab;
+            int n = Math.min(y1, (slab + 1) * rowsPerSlab) - y;
+            views[slab].put((y - slab * rowsPerSlab) * width, src, offset, n * width);
+            offset += n * width;
+            y += n;
+        }
+    }
+
+    /**
+     * A TYPE_CUSTOM ARGB image reading and writing this storage in place, for ImageIO encoders.
+     * Its DataBuffer is int-indexed, so this needs fewer than 2^31 pixels.
+     */
+    public BufferedImage toBufferedImage() {
+        WritableRaster raster = Raster.createPackedRaster(dataBuffer(), width, height, width, ARGB_MASKS, null);
+        return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+    }
+
+    DataBuffer dataBuffer() {
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Too many pixels for a java.awt DataBuffer: " + width + "x" + height);
+        }
+        return new SlabDataBuffer();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** Releases the memory (and the scratch file's space) now; the image must not be used afterwards. */
+    @Override
+    public void close() {
+        ByteBuffer[] released = slabs;
+        if (released == null) return;
+        slabs = null;
+        for (ByteBuffer slab : released) {
+            Cleaner.free(slab);
+        }
+    }
+
+    private void checkOpen() {
+        if (slabs == null) throw new IllegalStateException("Image has been closed");
+    }
+
+    private final class SlabDataBuffer extends DataBuffer {
+        private final int slabPixels = rowsPerSlab * width;
+
+        SlabDataBuffer() {
+            super(DataBuffer.TYPE_INT, width * height);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            checkOpen();
+            return views[i / slabPixels].get(i % slabPixels);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            checkOpen();
+            views[i / slabPixels].put(i % slabPixels, val);
+        }
+    }
+
+    /**
+     * Frees direct and mapped buffers without waiting for GC, through sun.misc.Unsafe#invokeCleaner
+     * (jdk.unsupported). If that isn't accessible the buffers are simply left to the collector.
+     */
+    private static final class Cleaner {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                unsafe = null;
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void free(ByteBuffer buffer) {
+            if (INVOKE_CLEANER == null || !buffer.isDirect()) return;
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // leave it to the collector
+            }
+        }
+    }
+}
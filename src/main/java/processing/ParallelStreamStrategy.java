@@ -0,0 +1,57 @@
+package processing;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+// One stream element per chunk of rows, run inside a dedicated pool sized to numThreads. A
+// parallel stream started from a ForkJoinPool task uses that pool instead of the common pool.
+public final class ParallelStreamStrategy implements ExecutionStrategy {
+    private final WorkerPools pools;
+    private final int numThreads;
+    private volatile int observedParallelism;
+
+    public ParallelStreamStrategy(WorkerPools pools, int numThreads) {
+        this.pools = pools;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException {
+        int step = Math.max(1, grain);
+        Set<Thread> workers = ConcurrentHashMap.newKeySet();
+        AtomicBoolean stopped = new AtomicBoolean();
+        try {
+            pools.streamPool(numThreads).submit(() ->
+                IntStream.range(0, Math.ceilDiv(items, step)).parallel().forEach(c -> {
+                    if (stopped.get()) return;
+                    workers.add(Thread.currentThread());
+                    task.run(c * step, Math.min(items, c * step + step));
+                })
+            ).get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Chunks the stream hasn't started yet are skipped
+            stopped.set(true);
+            throw e;
+        }
+        observedParallelism = workers.size();
+    }
+
+    // Several chunks per thread rather than one element per row
+    @Override
+    public int rowGrain(ImageProcessor kernel, int width, int height) {
+        return SplitPolicy.rowGrain(kernel, width, height, numThreads);
+    }
+
+    @Override
+    public int parallelism() {
+        return numThreads;
+    }
+
+    @Override
+    public int observedParallelism() {
+        return observedParallelism;
+    }
+}
@@ -0,0 +1,115 @@
+package processing;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycles pixel arrays so repeated processing of similarly sized images stops allocating.
+ * Lengths are rounded up to size classes, four per power of two, so a leased array is at most
+ * 25% longer than asked for and images that differ by a few rows share arrays. A leased array's
+ * contents are whatever its last user left there. Release an array only once nothing reads or
+ * writes it any more; releasing is optional, and arrays that would take the pool past its
+ * capacity are left to the collector.
+ * <p>
+ * The shared pool holds up to -Dimageprocessor.pixelPoolMb megabytes (default an eighth of the heap).
+ */
+public final class PixelPool {
+    private static final int MIN_LENGTH = 64;
+    // Lengths above this aren't pooled; the next size classes would pass the maximum array length
+    private static final int MAX_LENGTH = 1 << 30;
+    private static final int SUB_BUCKETS = 4;
+    private static final int MIN_EXPONENT = Integer.numberOfTrailingZeros(MIN_LENGTH);
+    private static final int BUCKETS = (Integer.numberOfTrailingZeros(MAX_LENGTH) - MIN_EXPONENT) * SUB_BUCKETS + 1;
+
+    private static final PixelPool SHARED = new PixelPool(Long.getLong("imageprocessor.pixelPoolMb",
+        Runtime.getRuntime().maxMemory() / 8 / (1 << 20)) << 20);
+
+    private final long capacityBytes;
+    private final ArrayDeque<int[]>[] buckets;
+    private long retainedBytes;
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public record Stats(long leases, long hits, long retainedBytes) {}
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PixelPool(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+        this.buckets = new ArrayDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new ArrayDeque<>();
+    }
+
+    public static PixelPool shared() {
+        return SHARED;
+    }
+
+    /** An array of at least {@code minLength} ints, with unspecified contents. */
+    public int[] lease(int minLength) {
+        leases.incrementAndGet();
+        if (minLength > MAX_LENGTH) return new int[minLength];
+        int bucket = ceilBucket(minLength);
+        int[] pixels;
+        synchronized (this) {
+            pixels = buckets[bucket].pollLast();
+            if (pixels != null) retainedBytes -= 4L * pixels.length;
+        }
+        if (pixels == null) return new int[classLength(bucket)];
+        hits.incrementAndGet();
+        return pixels;
+    }
+
+    /** A {@code width} x {@code height} image with unspecified pixels; hand it back with {@link #release(ImageBuffer)}. */
+    public ImageBuffer lease(int width, int height) {
+        return new ImageBuffer(width, height, lease(Math.multiplyExact(width, height)));
+    }
+
+    /** Returns an array for reuse; it must not be touched afterwards. Null is ignored. */
+    public void release(int[] pixels) {
+        if (pixels == null || pixels.length < MIN_LENGTH || pixels.length > MAX_LENGTH) return;
+        long bytes = 4L * pixels.length;
+        synchronized (this) {
+            if (retainedBytes + bytes > capacityBytes) return;
+            // Filed under the largest class it can serve
+            buckets[floorBucket(pixels.length)].addLast(pixels);
+            retainedBytes += bytes;
+        }
+    }
+
+    public void release(ImageBuffer image) {
+        if (image != null) release(image.getPixels());
+    }
+
+    /** Drops every pooled array. */
+    public synchronized void clear() {
+        for (ArrayDeque<int[]> bucket : buckets) bucket.clear();
+        retainedBytes = 0;
+    }
+
+    public Stats stats() {
+        long retained;
+        synchronized (this) {
+            retained = retainedBytes;
+        }
+        return new Stats(leases.get(), hits.get(), retained);
+    }
+
+    // Class i is (4 + i % 4) << (i / 4 + MIN_EXPONENT - 2): 64, 80, 96, 112, 128, 160, ...
+    static int classLength(int bucket) {
+        int exponent = bucket / SUB_BUCKETS + MIN_EXPONENT;
+        return (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+    }
+
+    // The smallest class at least n long
+    static int ceilBucket(int n) {
+        if (n <= MIN_LENGTH) return 0;
+        int bucket = floorBucket(n);
+        return classLength(bucket) == n ? bucket : bucket + 1;
+    }
+
+    // The largest class at most n long
+    static int floorBucket(int n) {
+        int exponent = 31 - Integer.numberOfLeadingZeros(n);
+        int sub = (n - (1 << exponent)) >> (exponent - 2);
+        return (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+}
@@ -0,0 +1,273 @@
+package processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes 8-bit RGB or RGBA PNGs, compressing horizontal strips in parallel. Each strip is row
+ * filtered (the same per-row filter heuristic as ImageIO's writer) and deflated on its own, primed
+ * with the last 32 KB of the data before it so the ratio stays close to a single stream. Strips
+ * end on a sync flush, so their raw deflate output concatenates into one zlib stream whose
+ * Adler-32 is combined from the strips' checksums. Each strip goes into its own IDAT chunk.
+ */
+final class PngEncoder {
+    @FunctionalInterface
+    interface RowSource {
+        /** Copies image rows [y0, y1) into {@code dst} starting at {@code offset}. */
+        void readRows(int y0, int y1, int[] dst, int offset);
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int STRIP_BYTES = 1 << 20;
+    // Below this a strip would spend a noticeable share of its time priming the dictionary
+    private static final int MIN_STRIP_BYTES = 1 << 18;
+    private static final int DICTIONARY_BYTES = 32 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private record Strip(byte[] data, long adler, long length) {}
+
+    private final RowSource source;
+    private final int width;
+    private final int height;
+    private final int level;
+    private final ExecutionStrategy strategy;
+    private boolean alpha;
+
+    PngEncoder(RowSource source, int width, int height, int level, ExecutionStrategy strategy) {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.level = level;
+        this.strategy = strategy;
+    }
+
+    /** Writes RGBA only if {@code keepAlpha} and some pixel is not fully opaque, otherwise RGB. */
+    void write(OutputStream out, boolean keepAlpha) throws IOException {
+        alpha = keepAlpha && hasTransparency();
+        int stride = width * (alpha ? 4 : 3) + 1;
+        int rows = Math.max(Math.ceilDiv(MIN_STRIP_BYTES, stride),
+            Math.min(STRIP_BYTES / stride, Math.ceilDiv(height, 4 * strategy.parallelism())));
+        int strips = Math.ceilDiv(height, rows);
+        // Strips are compressed a batch at a time and written in order, which bounds memory
+        int batch = 4 * strategy.parallelism();
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = (byte) (alpha ? 6 : 2);
+        chunk(out, "IHDR", header);
+
+        long adler = 1;
+        Strip[] done = new Strip[batch];
+        for (int first = 0; first < strips; first += batch) {
+            int base = first;
+            int count = Math.min(batch, strips - first);
+            ImageFiles.execute(strategy, count, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int s = base + i;
+                    done[i] = compress(s * rows, Math.min(height, (s + 1) * rows), s == strips - 1);
+                }
+            });
+            for (int i = 0; i < count; i++) {
+                Strip strip = done[i];
+                adler = combineAdler(adler, strip.adler(), strip.length());
+                byte[] prefix = first + i == 0 ? zlibHeader() : new byte[0];
+                byte[] suffix = new byte[0];
+                if (first + i == strips - 1) {
+                    suffix = new byte[4];
+                    putInt(suffix, 0, (int) adler);
+                }
+                chunk(out, "IDAT", prefix, strip.data(), suffix);
+                done[i] = null;
+            }
+        }
+        chunk(out, "IEND");
+    }
+
+    private boolean hasTransparency() throws IOException {
+        AtomicBoolean found = new AtomicBoolean();
+        int rows = Math.max(1, Math.min(height, STRIP_BYTES / 4 / width));
+        ImageFiles.execute(strategy, Math.ceilDiv(height, rows), (from, to) -> {
+            int[] argb = new int[rows * width];
+            for (int i = from; i < to && !found.get(); i++) {
+                int y0 = i * rows;
+                int n = Math.min(height, y0 + rows) - y0;
+                source.readRows(y0, y0 + n, argb, 0);
+                for (int p = 0; p < n * width; p++) {
+                    if (argb[p] >>> 24 != 0xff) {
+                        found.set(true);
+                        break;
+                    }
+                }
+            }
+        });
+        return found.get();
+    }
+
+    /** Filters and deflates rows [y0, y1); the rows before y0 only prime the dictionary. */
+    private Strip compress(int y0, int y1, boolean last) {
+        int bpp = alpha ? 4 : 3;
+        int stride = width * bpp + 1;
+        int primer = Math.min(y0, Math.ceilDiv(DICTIONARY_BYTES, stride));
+        int first = y0 - primer;
+        // One extra row above for the Up, Average and Paeth filters
+        int top = Math.max(0, first - 1);
+        int[] argb = new int[(y1 - top) * width];
+        source.readRows(top, y1, argb, 0);
+
+        byte[] filtered = new byte[(y1 - first) * stride];
+        byte[] prev = new byte[width * bpp];
+        byte[] cur = new byte[width * bpp];
+        byte[][] candidates = new byte[5][width * bpp];
+        if (first > 0) toBytes(argb, 0, prev, bpp);
+        for (int y = first; y < y1; y++) {
+            toBytes(argb, (y - top) * width, cur, bpp);
+            filterRow(cur, prev, bpp, candidates, filtered, (y - first) * stride);
+            byte[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+
+        int start = primer * stride;
+        int length = filtered.length - start;
+        Adler32 checksum = new Adler32();
+        checksum.update(filtered, start, length);
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (start > 0) {
+                int dictionary = Math.min(start, DICTIONARY_BYTES);
+                deflater.setDictionary(filtered, start - dictionary, dictionary);
+            }
+            deflater.setInput(filtered, start, length);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, length / 2));
+            byte[] buffer = new byte[1 << 16];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return new Strip(compressed.toByteArray(), checksum.getValue(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void toBytes(int[] argb, int offset, byte[] row, int bpp) {
+        for (int x = 0, i = 0; x < width; x++) {
+            int p = argb[offset + x];
+            row[i++] = (byte) (p >> 16);
+            row[i++] = (byte) (p >> 8);
+            row[i++] = (byte) p;
+            if (bpp == 4) row[i++] = (byte) (p >>> 24);
+        }
+    }
+
+    /**
+     * Picks the filter whose output has the smallest sum of absolute signed bytes, the usual
+     * PNG heuristic; level 0 stores rows unfiltered as there is nothing to gain.
+     */
+    private void filterRow(byte[] cur, byte[] prev, int bpp, byte[][] candidates, byte[] out, int pos) {
+        int n = cur.length;
+        int best = 0;
+        if (level > 0) {
+            long bestSum = Long.MAX_VALUE;
+            for (int type = 0; type < 5; type++) {
+                byte[] f = candidates[type];
+                long sum = 0;
+                for (int i = 0; i < n && sum < bestSum; i++) {
+                    int x = cur[i] & 0xff;
+                    int a = i >= bpp ? cur[i - bpp] & 0xff : 0;
+                    int b = prev[i] & 0xff;
+                    int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+                    int v = switch (type) {
+                        case 0 -> x;
+                        case 1 -> x - a;
+                        case 2 -> x - b;
+                        case 3 -> x - ((a + b) >>> 1);
+                        default -> x - paeth(a, b, c);
+                    };
+                    f[i] = (byte) v;
+                    sum += Math.abs(f[i]);
+                }
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = type;
+                }
+            }
+        }
+        out[pos] = (byte) best;
+        System.arraycopy(best == 0 ? cur : candidates[best], 0, out, pos + 1, n);
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    private byte[] zlibHeader() {
+        int flevel = level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+        int cmf = 0x78;
+        int flg = flevel << 6;
+        flg += 31 - (cmf * 256 + flg) % 31;
+        return new byte[] {(byte) cmf, (byte) flg};
+    }
+
+    /** The Adler-32 of two concatenated blocks, from each block's checksum (zlib's adler32_combine). */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE) sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    private static void chunk(OutputStream out, String type, byte[]... parts) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        long length = 0;
+        for (byte[] part : parts) length += part.length;
+        byte[] header = new byte[8];
+        putInt(header, 0, (int) length);
+        System.arraycopy(typeBytes, 0, header, 4, 4);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        out.write(header);
+        for (byte[] part : parts) {
+            crc.update(part);
+            out.write(part);
+        }
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) crc.getValue());
+        out.write(trailer);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
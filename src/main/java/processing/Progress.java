@@ -0,0 +1,52 @@
+package processing;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress and cancellation for one run. Workers add the output pixels of each band or tile
+ * they finish to a LongAdder, which costs one mostly uncontended add per region and nothing
+ * inside the kernels' loops. Readers such as a progress bar poll {@link #fraction()} on their
+ * own schedule. After {@link #cancel()} every worker stops before its next band or tile, and
+ * the run ends with a CancellationException.
+ */
+public final class Progress {
+    /** For runs nobody watches; regions are not split up for it and it cannot be cancelled. */
+    public static final Progress NONE = new Progress();
+
+    private final LongAdder done = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        if (this == NONE) throw new UnsupportedOperationException("Progress.NONE cannot be cancelled");
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Share of the expected pixels done so far, from 0 to 1; 0 before any work is expected. */
+    public double fraction() {
+        long t = total.sum();
+        return t == 0 ? 0 : Math.min(1.0, (double) done.sum() / t);
+    }
+
+    public long pixelsDone() {
+        return done.sum();
+    }
+
+    /** Adds {@code pixels} more output pixels to the work this run will do. */
+    void expect(long pixels) {
+        if (this != NONE) total.add(pixels);
+    }
+
+    void add(long pixels) {
+        if (this != NONE) done.add(pixels);
+    }
+
+    void checkCancelled() {
+        if (cancelled) throw new CancellationException("Processing cancelled");
+    }
+}
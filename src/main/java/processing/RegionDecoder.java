@@ -0,0 +1,142 @@
+package processing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes an image file in horizontal regions. The file is memory-mapped once and every region
+ * gets its own ImageReader over the mapping, so readers that seek straight to a row (BMP, TIFF)
+ * decode the regions in parallel. PNG and JPEG readers would decode from the top of the file for
+ * every region, so those images are decoded whole and only the conversion to ARGB is split up.
+ */
+final class RegionDecoder implements AutoCloseable {
+    @FunctionalInterface
+    interface RowSink {
+        /** Takes output rows [y0, y1) from {@code image}, whose first row is output row {@code imageY0}. */
+        void rows(BufferedImage image, int imageY0, int y0, int y1) throws IOException;
+    }
+
+    private static final Set<String> SEEKABLE_FORMATS = Set.of("bmp", "tif", "tiff");
+    private static final long PARALLEL_PIXELS = 1 << 20;
+    private static final int MIN_REGION_ROWS = 64;
+    private static final int CONVERT_PIXELS = 1 << 18;
+
+    private final Path file;
+    private final ByteBuffer data;
+    private final String name;
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+
+    private RegionDecoder(Path file, ByteBuffer data, String name) throws IOException {
+        this.file = file;
+        this.data = data;
+        this.name = name;
+        this.stream = newStream();
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) throw new IOException("Unsupported image format: " + name);
+            this.reader = readers.next();
+            reader.setInput(stream, true, true);
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+    }
+
+    /** Files over 2 GB can't be mapped as one buffer and are read through a file stream instead. */
+    static RegionDecoder open(Path file) throws IOException {
+        ByteBuffer mapped = null;
+        long size = Files.size(file);
+        if (size <= Integer.MAX_VALUE) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+        return new RegionDecoder(file, mapped, file.toString());
+    }
+
+    /** Decodes an encoded image already in memory, such as a request body. */
+    static RegionDecoder of(ByteBuffer data) throws IOException {
+        return new RegionDecoder(null, data, "image data");
+    }
+
+    private ImageInputStream newStream() throws IOException {
+        if (data != null) return new MappedImageInputStream(data);
+        ImageInputStream in = ImageIO.createImageInputStream(file.toFile());
+        if (in == null) throw new IOException("Cannot open " + file);
+        return in;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    /** Decodes every row into {@code sink}, from as many threads as {@code strategy} uses. */
+    void decode(ExecutionStrategy strategy, RowSink sink) throws IOException {
+        int regions = regions(strategy);
+        if (regions > 1) {
+            int rows = Math.ceilDiv(height, regions);
+            ImageFiles.execute(strategy, Math.ceilDiv(height, rows), (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    decodeRegion(i * rows, Math.min(height, (i + 1) * rows), sink);
+                }
+            });
+            return;
+        }
+        BufferedImage image = reader.read(0);
+        int rows = Math.max(1, Math.min(height, CONVERT_PIXELS / width));
+        ImageFiles.execute(strategy, Math.ceilDiv(height, rows), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                sink.rows(image, 0, i * rows, Math.min(height, (i + 1) * rows));
+            }
+        });
+    }
+
+    private int regions(ExecutionStrategy strategy) throws IOException {
+        String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        if (strategy.parallelism() < 2 || !SEEKABLE_FORMATS.contains(format)) return 1;
+        if (reader.getOriginatingProvider() == null || (long) width * height < PARALLEL_PIXELS) return 1;
+        return Math.max(1, Math.min(strategy.parallelism(), height / MIN_REGION_ROWS));
+    }
+
+    private void decodeRegion(int y0, int y1, RowSink sink) throws IOException {
+        ImageReaderSpi provider = reader.getOriginatingProvider();
+        ImageReader regionReader = provider.createReaderInstance();
+        try (ImageInputStream in = newStream()) {
+            regionReader.setInput(in, true, true);
+            ImageReadParam param = regionReader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y0, width, y1 - y0));
+            sink.rows(regionReader.read(0, param), y0, y0, y1);
+        } finally {
+            regionReader.dispose();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+}
@@ -0,0 +1,272 @@
+package processing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtered images kept for reuse, keyed by a hash of the source pixels plus the filter chain
+ * with its options, so running the same filter on the same image again (with any strategy or kernel
+ * mode, which all give identical output) costs a lookup. Entries are evicted least recently
+ * used first once their pixels exceed the memory budget. With a directory, every result is
+ * also written there as raw pixels and survives eviction and restarts, up to its own budget;
+ * disk errors only turn a hit into a miss. Thread-safe.
+ */
+public final class ResultCache {
+    public record Key(long contentHash, int width, int height, FilterChain chain) {
+        public static Key of(long contentHash, ImageBuffer source, FilterChain chain) {
+            return new Key(contentHash, source.getWidth(), source.getHeight(), chain);
+        }
+
+        String fileName() {
+            return String.format(Locale.ROOT, "%016x-%dx%d-%s.argb", contentHash, width, height, chain.id());
+        }
+    }
+
+    public record Stats(long hits, long diskHits, long misses, long memoryBytes, long diskBytes) {}
+
+    private static final String SUFFIX = ".argb";
+    private static final int READ_CHUNK_BYTES = 64 * 1024;
+
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<Key, ImageBuffer> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    private final Path dir;
+    private final long maxDiskBytes;
+    // File name to size, least recently used first
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** A memory-only cache. */
+    public ResultCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.dir = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /** A cache backed by {@code dir}; results already there from earlier runs are picked up. */
+    public ResultCache(long maxMemoryBytes, Path dir, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.dir = dir;
+        this.maxDiskBytes = maxDiskBytes;
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(ResultCache::lastModified));
+        synchronized (disk) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                disk.put(file.getFileName().toString(), size);
+                diskBytes += size;
+            }
+            trimDisk();
+        }
+    }
+
+    /** Hashes every pixel; equal images always get equal hashes and different ones almost never do. */
+    public static long contentHash(ImageBuffer image) {
+        int[] pixels = image.getPixels();
+        int n = image.getWidth() * image.getHeight();
+        // Four independent lanes so the multiplies overlap
+        long h0 = 0x9E3779B97F4A7C15L, h1 = 0xC2B2AE3D27D4EB4FL, h2 = 0x165667B19E3779F9L, h3 = 0x27D4EB2F165667C5L;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            h0 = Long.rotateLeft(h0 + pixels[i] * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+            h1 = Long.rotateLeft(h1 + pixels[i + 1] * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+            h2 = Long.rotateLeft(h2 + pixels[i + 2] * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+            h3 = Long.rotateLeft(h3 + pixels[i + 3] * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < n; i++) {
+            h0 = Long.rotateLeft(h0 + pixels[i] * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        long h = Long.rotateLeft(h0, 1) + Long.rotateLeft(h1, 7) + Long.rotateLeft(h2, 12) + Long.rotateLeft(h3, 18) + n;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** The cached result, or null; counts a hit or a miss. */
+    public ImageBuffer get(Key key) {
+        ImageBuffer result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result == null && dir != null) {
+            result = readDisk(key);
+            if (result != null) {
+                diskHits.increment();
+                putMemory(key, result);
+            }
+        }
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    public void put(Key key, ImageBuffer result) {
+        putMemory(key, result);
+        if (dir != null) writeDisk(key, result);
+    }
+
+    public Stats stats() {
+        long mem;
+        synchronized (memory) {
+            mem = memoryBytes;
+        }
+        long onDisk;
+        synchronized (disk) {
+            onDisk = diskBytes;
+        }
+        return new Stats(hits.sum(), diskHits.sum(), misses.sum(), mem, onDisk);
+    }
+
+    private void putMemory(Key key, ImageBuffer result) {
+        synchronized (memory) {
+            ImageBuffer old = memory.put(key, result);
+            if (old != null) memoryBytes -= sizeOf(old);
+            memoryBytes += sizeOf(result);
+            Iterator<Map.Entry<Key, ImageBuffer>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= sizeOf(eldest.next().getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    // Only the index lookup, which also marks the entry as recently used, holds the lock; an
+    // entry evicted meanwhile is still read whole if it was opened first, else it is a miss
+    private ImageBuffer readDisk(Key key) {
+        String name = key.fileName();
+        Path file = dir.resolve(name);
+        synchronized (disk) {
+            if (disk.get(name) == null) return null;
+        }
+        int n = key.width() * key.height();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != 4L * n) throw new IOException("Truncated cache entry " + file);
+            int[] pixels = new int[n];
+            ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int filled = 0;
+            while (filled < n) {
+                if (channel.read(chunk) < 0) throw new IOException("Truncated cache entry " + file);
+                chunk.flip();
+                int count = Math.min(chunk.remaining() / 4, n - filled);
+                chunk.asIntBuffer().get(pixels, filled, count);
+                filled += count;
+                // A read can end mid-pixel; its first bytes move to the front for the next one
+                chunk.position(chunk.position() + 4 * count).compact();
+            }
+            touch(file);
+            return new ImageBuffer(key.width(), key.height(), pixels);
+        } catch (IOException e) {
+            // Including a file that has vanished: the entry is dropped and this is a miss
+            synchronized (disk) {
+                removeDisk(name);
+            }
+            return null;
+        }
+    }
+
+    private void writeDisk(Key key, ImageBuffer result) {
+        String name = key.fileName();
+        long size = sizeOf(result);
+        // Entries are written from a single ByteBuffer
+        if (size > maxDiskBytes || size > Integer.MAX_VALUE) return;
+        ByteBuffer bytes = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asIntBuffer().put(result.getPixels(), 0, result.getWidth() * result.getHeight());
+        synchronized (disk) {
+            if (disk.get(name) != null) return;
+            Path tmp = null;
+            try {
+                // Written under another name first, so a crash never leaves a partial entry
+                tmp = Files.createTempFile(dir, "entry-", ".tmp");
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    while (bytes.hasRemaining()) channel.write(bytes);
+                }
+                Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                disk.put(name, size);
+                diskBytes += size;
+                trimDisk();
+            } catch (IOException e) {
+                try {
+                    if (tmp != null) Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            String name = entry.getKey();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+            try {
+                Files.deleteIfExists(dir.resolve(name));
+            } catch (IOException ignored) {
+                // an orphaned file is only wasted space
+            }
+        }
+    }
+
+    private void removeDisk(String name) {
+        Long size = disk.remove(name);
+        if (size != null) diskBytes -= size;
+        try {
+            Files.deleteIfExists(dir.resolve(name));
+        } catch (IOException ignored) {
+            // an orphaned file is only wasted space
+        }
+    }
+
+    // The modification time orders entries by use across restarts; an entry evicted meanwhile has none
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // only the order after a restart suffers
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long sizeOf(ImageBuffer image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+}
@@ -0,0 +1,18 @@
+package processing;
+
+public final class SequentialStrategy implements ExecutionStrategy {
+    @Override
+    public void execute(int items, int grain, RangeTask task) {
+        task.run(0, items);
+    }
+
+    @Override
+    public int rowGrain(ImageProcessor kernel, int width, int height) {
+        return Math.max(1, height);
+    }
+
+    @Override
+    public int parallelism() {
+        return 1;
+    }
+}
@@ -0,0 +1,132 @@
+package processing;
+
+import java.util.Arrays;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API version of BoxBlurKernel. The horizontal pass stays scalar (a running sum is a
+ * serial dependency along the row); the vertical pass, which updates independent column sums,
+ * is vectorised. Column sums keep two channels per int (alpha/green and red/blue in 16-bit
+ * halves; 255 * 201 still fits), and the divide by the window is done in float, which is exact
+ * here: (sum + 0.5) / n is never within float error of an integer.
+ */
+public final class SimdBoxBlurKernel implements ImageProcessor {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private final int radius;
+    private final int[] div;
+    private final float scale;
+
+    public SimdBoxBlurKernel(int radius) {
+        this.radius = radius;
+        this.div = BoxBlur.divisionTable(radius);
+        this.scale = 1f / (2 * radius + 1);
+    }
+
+    @Override
+    public void processRegion(ImageBuffer src, ImageBuffer dst, int x0, int y0, int x1, int y1) {
+        int w = src.getWidth();
+        int tw = x1 - x0;
+        int lastRow = src.getHeight() - 1;
+        int window = 2 * radius + 1;
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        int[] ring = KernelScratch.lease(KernelScratch.RING, window * tw);
+        int[] sumAG = KernelScratch.lease(KernelScratch.SUM_0, tw);
+        int[] sumRB = KernelScratch.lease(KernelScratch.SUM_1, tw);
+        Arrays.fill(sumAG, 0, tw, 0);
+        Arrays.fill(sumRB, 0, tw, 0);
+
+        for (int k = y0 - radius; k <= y0 + radius; k++) {
+            int slot = Math.floorMod(k, window) * tw;
+            BoxBlur.blurRow(in, BoxBlur.clamp(k, lastRow) * w, w, x0, x1, ring, slot, radius, div);
+            add(ring, slot, sumAG, sumRB, tw);
+        }
+        for (int y = y0; y < y1; y++) {
+            emit(sumAG, sumRB, out, y * w + x0, tw);
+            if (y + 1 == y1) break;
+            int slot = Math.floorMod(y - radius, window) * tw;
+            subtract(ring, slot, sumAG, sumRB, tw);
+            BoxBlur.blurRow(in, BoxBlur.clamp(y + radius + 1, lastRow) * w, w, x0, x1, ring, slot, radius, div);
+            add(ring, slot, sumAG, sumRB, tw);
+        }
+        KernelScratch.release(KernelScratch.RING, ring);
+        KernelScratch.release(KernelScratch.SUM_0, sumAG);
+        KernelScratch.release(KernelScratch.SUM_1, sumRB);
+    }
+
+    private static void add(int[] ring, int slot, int[] sumAG, int[] sumRB, int tw) {
+        int x = 0;
+        int upper = SPECIES.loopBound(tw);
+        for (; x < upper; x += SPECIES.length()) {
+            IntVector p = IntVector.fromArray(SPECIES, ring, slot + x);
+            IntVector.fromArray(SPECIES, sumAG, x)
+                .add(p.lanewise(VectorOperators.LSHR, 8).and(0x00ff00ff)).intoArray(sumAG, x);
+            IntVector.fromArray(SPECIES, sumRB, x)
+                .add(p.and(0x00ff00ff)).intoArray(sumRB, x);
+        }
+        for (; x < tw; x++) {
+            int p = ring[slot + x];
+            sumAG[x] += (p >>> 8) & 0x00ff00ff;
+            sumRB[x] += p & 0x00ff00ff;
+        }
+    }
+
+    private static void subtract(int[] ring, int slot, int[] sumAG, int[] sumRB, int tw) {
+        int x = 0;
+        int upper = SPECIES.loopBound(tw);
+        for (; x < upper; x += SPECIES.length()) {
+            IntVector p = IntVector.fromArray(SPECIES, ring, slot + x);
+            IntVector.fromArray(SPECIES, sumAG, x)
+                .sub(p.lanewise(VectorOperators.LSHR, 8).and(0x00ff00ff)).intoArray(sumAG, x);
+            IntVector.fromArray(SPECIES, sumRB, x)
+                .sub(p.and(0x00ff00ff)).intoArray(sumRB, x);
+        }
+        for (; x < tw; x++) {
+            int p = ring[slot + x];
+            sumAG[x] -= (p >>> 8) & 0x00ff00ff;
+            sumRB[x] -= p & 0x00ff00ff;
+        }
+    }
+
+    private void emit(int[] sumAG, int[] sumRB, int[] out, int row, int tw) {
+        int x = 0;
+        int upper = SPECIES.loopBound(tw);
+        for (; x < upper; x += SPECIES.length()) {
+            IntVector ag = IntVector.fromArray(SPECIES, sumAG, x);
+            IntVector rb = IntVector.fromArray(SPECIES, sumRB, x);
+            IntVector a = divide(ag.lanewise(VectorOperators.LSHR, 16));
+            IntVector g = divide(ag.and(0xffff));
+            IntVector r = divide(rb.lanewise(VectorOperators.LSHR, 16));
+            IntVector b = divide(rb.and(0xffff));
+            a.lanewise(VectorOperators.LSHL, 24)
+                .or(r.lanewise(VectorOperators.LSHL, 16))
+                .or(g.lanewise(VectorOperators.LSHL, 8))
+                .or(b)
+                .intoArray(out, row + x);
+        }
+        for (; x < tw; x++) {
+            int ag = sumAG[x];
+            int rb = sumRB[x];
+            out[row + x] = (div[ag >>> 16] << 24) | (div[rb >>> 16] << 16) | (div[ag & 0xffff] << 8) | div[rb & 0xffff];
+        }
+    }
+
+    private IntVector divide(IntVector sum) {
+        FloatVector f = (FloatVector) sum.convert(VectorOperators.I2F, 0);
+        return (IntVector) f.add(0.5f).mul(scale).convert(VectorOperators.F2I, 0);
+    }
+
+    @Override
+    public int halo() {
+        return radius;
+    }
+
+    @Override
+    public double estimatedNanosPerPixel() {
+        return 2.0;
+    }
+}
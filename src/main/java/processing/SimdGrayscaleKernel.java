@@ -0,0 +1,43 @@
+package processing;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API version of GrayscaleKernel
+public final class SimdGrayscaleKernel implements ImageProcessor {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void processRegion(ImageBuffer src, ImageBuffer dst, int x0, int y0, int x1, int y1) {
+        int w = src.getWidth();
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for (int y = y0; y < y1; y++) {
+            int i = y * w + x0;
+            int to = y * w + x1;
+            int upper = i + SPECIES.loopBound(to - i);
+            for (; i < upper; i += SPECIES.length()) {
+                IntVector p = IntVector.fromArray(SPECIES, in, i);
+                IntVector sum = p.lanewise(VectorOperators.LSHR, 16).and(0xff)
+                    .add(p.lanewise(VectorOperators.LSHR, 8).and(0xff))
+                    .add(p.and(0xff));
+                // (sum * 0xAAAB) >>> 17 == sum / 3 for every sum up to 3 * 255
+                IntVector gray = sum.mul(0xAAAB).lanewise(VectorOperators.LSHR, 17);
+                p.and(0xff000000).or(gray.mul(0x010101)).intoArray(out, i);
+            }
+            for (; i < to; i++) {
+                out[i] = GrayscaleKernel.gray(in[i]);
+            }
+        }
+    }
+
+    @Override
+    public double estimatedNanosPerPixel() {
+        return 0.2;
+    }
+}
@@ -0,0 +1,27 @@
+package processing;
+
+/**
+ * Decides whether the Vector API kernels can be used. They need the incubator module at
+ * runtime (--add-modules jdk.incubator.vector) and a preferred int species of at least
+ * MIN_LANES lanes; narrower hardware gains nothing over the scalar loops. This class itself
+ * never touches jdk.incubator.vector, so it is safe to load when the module is absent.
+ */
+final class SimdSupport {
+    static final int MIN_LANES = 4;
+    private static final boolean AVAILABLE = detect();
+
+    private SimdSupport() {}
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean detect() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return false;
+        try {
+            return SimdGrayscaleKernel.lanes() >= MIN_LANES;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
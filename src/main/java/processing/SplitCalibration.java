@@ -0,0 +1,115 @@
+package processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Measures each kernel's single-thread cost per pixel on this machine and stores it, so
+ * SplitPolicy can size ForkJoin leaves from real numbers instead of estimates. Results live
+ * in ~/.imageprocessor/split-calibration.properties (override with
+ * -Dimageprocessor.calibration=path) and are loaded once per JVM.
+ */
+public final class SplitCalibration {
+    private static final int SAMPLE_WIDTH = 2048;
+    private static final int SAMPLE_HEIGHT = 256;
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 15;
+
+    private static volatile Properties measured;
+
+    private SplitCalibration() {}
+
+    public static Path file() {
+        String override = System.getProperty("imageprocessor.calibration");
+        if (override != null) return Paths.get(override);
+        return Paths.get(System.getProperty("user.home"), ".imageprocessor", "split-calibration.properties");
+    }
+
+    public static double nanosPerPixel(ImageProcessor kernel) {
+        String value = load().getProperty(key(kernel));
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException ignored) {
+                // fall back to the estimate
+            }
+        }
+        return kernel.estimatedNanosPerPixel();
+    }
+
+    /** Times every filter's kernels, stores the results and returns them by kernel name. */
+    public static Map<String, Double> calibrate() throws IOException {
+        ImageBuffer sample = sampleImage();
+        ImageBuffer out = ImageBuffer.allocate(SAMPLE_WIDTH, SAMPLE_HEIGHT);
+        Map<String, Double> results = new LinkedHashMap<>();
+        for (FilterType filter : FilterType.values()) {
+            for (KernelMode mode : KernelMode.values()) {
+                if (mode == KernelMode.SIMD && !Kernels.isSimdAvailable()) continue;
+                for (ImageProcessor kernel : Kernels.passes(filter, FilterOptions.DEFAULT, mode)) {
+                    results.put(key(kernel), measure(kernel, sample, out));
+                }
+            }
+        }
+        Properties props = new Properties();
+        results.forEach((k, v) -> props.setProperty(k, String.format(java.util.Locale.ROOT, "%.4f", v)));
+        props.setProperty("availableProcessors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        Path file = file();
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (OutputStream os = Files.newOutputStream(file)) {
+            props.store(os, "Single-thread kernel cost in nanoseconds per pixel");
+        }
+        measured = props;
+        return results;
+    }
+
+    private static double measure(ImageProcessor kernel, ImageBuffer src, ImageBuffer dst) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            kernel.processRows(src, dst, 0, SAMPLE_HEIGHT);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            kernel.processRows(src, dst, 0, SAMPLE_HEIGHT);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) (SAMPLE_WIDTH * SAMPLE_HEIGHT);
+    }
+
+    private static ImageBuffer sampleImage() {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] pixels = new int[SAMPLE_WIDTH * SAMPLE_HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | random.nextInt(1 << 24);
+        }
+        return new ImageBuffer(SAMPLE_WIDTH, SAMPLE_HEIGHT, pixels);
+    }
+
+    private static String key(ImageProcessor kernel) {
+        return kernel.getClass().getSimpleName();
+    }
+
+    private static Properties load() {
+        Properties props = measured;
+        if (props == null) {
+            props = new Properties();
+            Path file = file();
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    props.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Ignoring unreadable calibration file " + file + ": " + e.getMessage());
+                }
+            }
+            measured = props;
+        }
+        return props;
+    }
+}
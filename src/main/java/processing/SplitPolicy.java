@@ -0,0 +1,29 @@
+package processing;
+
+/**
+ * Chooses the ForkJoin leaf size in rows. A leaf must carry enough work to amortise forking
+ * (MIN_LEAF_NANOS) and enough rows that the kernel's halo stays a small share of it, but
+ * otherwise leaves are kept small enough to give every worker several of them, so one leaf
+ * stuck behind a busy core doesn't become a long tail. Per-pixel costs come from
+ * SplitCalibration when this machine has been calibrated, else from the kernel's estimate.
+ */
+public final class SplitPolicy {
+    static final long MIN_LEAF_NANOS = 100_000;
+    static final int LEAVES_PER_THREAD = 8;
+    static final int HALO_ROWS_FACTOR = 4;
+
+    private SplitPolicy() {}
+
+    public static int rowGrain(ImageProcessor kernel, int width, int height, int parallelism) {
+        return rowGrain(width, height, parallelism, SplitCalibration.nanosPerPixel(kernel), kernel.halo());
+    }
+
+    static int rowGrain(int width, int height, int parallelism, double nanosPerPixel, int halo) {
+        double rowNanos = Math.max(1e-3, nanosPerPixel * width);
+        int rowsForOverhead = (int) Math.ceil(MIN_LEAF_NANOS / rowNanos);
+        int rowsForHalo = HALO_ROWS_FACTOR * halo;
+        int rowsForBalance = height / (Math.max(1, parallelism) * LEAVES_PER_THREAD);
+        int grain = Math.max(rowsForBalance, Math.max(rowsForOverhead, rowsForHalo));
+        return Math.max(1, Math.min(grain, height));
+    }
+}
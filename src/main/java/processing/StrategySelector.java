@@ -0,0 +1,268 @@
+package processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the strategy and thread count predicted to filter an image fastest, from a cost model:
+ * <pre>
+ *   time = passes * overhead(strategy, threads)
+ *        + costScale * efficiency(strategy, threads) * work / min(threads, cores)
+ * </pre>
+ * where work is pixels times each pass's cost per pixel (measured by SplitCalibration, else the
+ * kernel's estimate). Overheads are measured once per JVM by timing empty runs of each
+ * candidate. The two factors learn from history: costScale corrects the per-pixel costs for
+ * every candidate at once, and each parallel candidate's efficiency captures how far it falls
+ * short of a perfect speed-up (sequential is 1 by definition). They are kept in
+ * ~/.imageprocessor/strategy-history.properties (override with -Dimageprocessor.strategyHistory),
+ * written at most every SAVE_INTERVAL and at exit rather than after every image, and every
+ * decision is logged with its predicted and actual time so the model can be checked.
+ */
+public final class StrategySelector {
+    /** A chosen strategy with the time the model expects it to take. */
+    public record Decision(StrategyType strategy, int threads, double predictedMillis, long pixels) {
+        @Override
+        public String toString() {
+            String name = strategy == StrategyType.SEQUENTIAL ? strategy.getLabel() : strategy.getLabel() + " x" + threads;
+            return String.format(Locale.ROOT, "%s, predicted %.1f ms", name, predictedMillis);
+        }
+    }
+
+    private record Candidate(StrategyType strategy, int threads) {
+        String key() {
+            return strategy.name() + "." + threads;
+        }
+    }
+
+    // How far one run moves the learned factors, and how far they may drift
+    private static final double LEARNING_RATE = 0.3;
+    private static final double MIN_EFFICIENCY = 0.25;
+    private static final double MAX_EFFICIENCY = 8.0;
+    private static final double MAX_COST_SCALE = 64.0;
+    private static final int OVERHEAD_WARMUP_RUNS = 200;
+    private static final int OVERHEAD_MEASURED_RUNS = 100;
+    private static final long SAVE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final System.Logger LOG = System.getLogger(StrategySelector.class.getName());
+
+    private static final StrategySelector SHARED =
+        new StrategySelector(WorkerPools.shared(), Runtime.getRuntime().availableProcessors(), historyFile());
+
+    private final WorkerPools pools;
+    private final int cores;
+    private final Path historyFile;
+    private final List<Candidate> candidates;
+    private final Map<Candidate, Double> overheadNanos = new LinkedHashMap<>();
+    private final Map<Candidate, Double> efficiency = new LinkedHashMap<>();
+    private double costScale = 1.0;
+    // History changes not yet written; versions keep an older snapshot from overwriting a newer one
+    private long version;
+    private long savedVersion;
+    private long lastSaveNanos;
+    private final Object fileLock = new Object();
+    private long writtenVersion;
+
+    public StrategySelector(WorkerPools pools, int cores, Path historyFile) {
+        this.pools = pools;
+        this.cores = Math.max(1, cores);
+        this.historyFile = historyFile;
+        this.candidates = candidates(this.cores);
+        loadHistory();
+        this.lastSaveNanos = System.nanoTime();
+        if (historyFile != null) {
+            Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("strategy-history").unstarted(this::flush));
+        }
+    }
+
+    public static StrategySelector shared() {
+        return SHARED;
+    }
+
+    public static Path historyFile() {
+        String override = System.getProperty("imageprocessor.strategyHistory");
+        if (override != null) return Paths.get(override);
+        return Paths.get(System.getProperty("user.home"), ".imageprocessor", "strategy-history.properties");
+    }
+
+    // Sequential, plus every parallel strategy at powers of two up to the core count and at the core count
+    private static List<Candidate> candidates(int cores) {
+        List<Candidate> list = new ArrayList<>();
+        list.add(new Candidate(StrategyType.SEQUENTIAL, 1));
+        TreeSet<Integer> threadCounts = new TreeSet<>();
+        for (int t = 2; t <= cores; t *= 2) threadCounts.add(t);
+        if (cores > 1) threadCounts.add(cores);
+        for (StrategyType type : StrategyType.values()) {
+            if (type == StrategyType.SEQUENTIAL) continue;
+            for (int t : threadCounts) list.add(new Candidate(type, t));
+        }
+        return list;
+    }
+
+    /** Times empty runs of every candidate; done on the first choose() if not called before. */
+    public synchronized void measureOverheads() throws InterruptedException {
+        if (!overheadNanos.isEmpty()) return;
+        Map<Candidate, Double> measured = new LinkedHashMap<>();
+        for (Candidate c : candidates) {
+            measured.put(c, c.strategy() == StrategyType.SEQUENTIAL ? 0.0 : measureOverhead(c));
+        }
+        overheadNanos.putAll(measured);
+    }
+
+    private double measureOverhead(Candidate c) throws InterruptedException {
+        ExecutionStrategy strategy = c.strategy().create(pools, c.threads());
+        ExecutionStrategy.RangeTask empty = (from, to) -> { };
+        long best = Long.MAX_VALUE;
+        try {
+            for (int i = 0; i < OVERHEAD_WARMUP_RUNS + OVERHEAD_MEASURED_RUNS; i++) {
+                long start = System.nanoTime();
+                strategy.execute(c.threads(), 1, empty);
+                if (i >= OVERHEAD_WARMUP_RUNS) best = Math.min(best, System.nanoTime() - start);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Empty task failed", e);
+        }
+        return best;
+    }
+
+    /** The candidate predicted to run {@code passes} over {@code pixels} pixels fastest. */
+    public Decision choose(long pixels, List<ImageProcessor> passes) throws InterruptedException {
+        measureOverheads();
+        Decision best = null;
+        for (Candidate c : candidates) {
+            double millis = predictNanos(c, pixels, passes) / 1e6;
+            if (best == null || millis < best.predictedMillis()) {
+                best = new Decision(c.strategy(), c.threads(), millis, pixels);
+            }
+        }
+        return best;
+    }
+
+    /** Predicted time for one specific strategy and thread count. */
+    public double predictMillis(StrategyType strategy, int threads, long pixels, List<ImageProcessor> passes)
+            throws InterruptedException {
+        measureOverheads();
+        return predictNanos(new Candidate(strategy, strategy == StrategyType.SEQUENTIAL ? 1 : threads), pixels, passes) / 1e6;
+    }
+
+    private synchronized double predictNanos(Candidate c, long pixels, List<ImageProcessor> passes) {
+        double overhead = overheadNanos.computeIfAbsent(c, k -> 0.0);
+        double work = pixels * passes.stream().mapToDouble(SplitCalibration::nanosPerPixel).sum();
+        return passes.size() * overhead + costScale * efficiency(c) * work / Math.min(c.threads(), cores);
+    }
+
+    /**
+     * Logs the decision against the measured time and moves the learned factors towards what
+     * this run achieved.
+     */
+    public void record(Decision decision, List<ImageProcessor> passes, long actualNanos) {
+        Candidate c = new Candidate(decision.strategy(), decision.threads());
+        double actualMillis = actualNanos / 1e6;
+        LOG.log(System.Logger.Level.INFO, String.format(Locale.ROOT,
+            "Auto strategy: %s for %.1f MP on %d cores, actual %.1f ms",
+            decision, decision.pixels() / 1e6, cores, actualMillis));
+        History due;
+        synchronized (this) {
+            double overhead = passes.size() * overheadNanos.getOrDefault(c, 0.0);
+            double work = decision.pixels() * passes.stream().mapToDouble(SplitCalibration::nanosPerPixel).sum()
+                / Math.min(c.threads(), cores);
+            if (work <= 0) return;
+            double ratio = Math.max(1.0, actualNanos - overhead) / work;
+            // Ratios are blended geometrically so a slow outlier weighs as much as a fast one
+            costScale = clamp(blend(costScale, ratio / efficiency(c)), 1 / MAX_COST_SCALE, MAX_COST_SCALE);
+            if (c.strategy() != StrategyType.SEQUENTIAL) {
+                efficiency.put(c, clamp(blend(efficiency(c), ratio / costScale), MIN_EFFICIENCY, MAX_EFFICIENCY));
+            }
+            version++;
+            due = System.nanoTime() - lastSaveNanos >= SAVE_INTERVAL_NANOS ? snapshot() : null;
+        }
+        // Outside the monitor, so other images' decisions never wait on the disk
+        if (due != null) write(due);
+    }
+
+    /** Writes learned changes that haven't been saved yet; also run at JVM exit. */
+    public void flush() {
+        History pending;
+        synchronized (this) {
+            pending = snapshot();
+        }
+        if (pending != null) write(pending);
+    }
+
+    private double efficiency(Candidate c) {
+        return efficiency.getOrDefault(c, 1.0);
+    }
+
+    private static double blend(double current, double observed) {
+        return Math.exp(Math.log(current) + LEARNING_RATE * (Math.log(observed) - Math.log(current)));
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void loadHistory() {
+        if (historyFile == null || !Files.isRegularFile(historyFile)) return;
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(historyFile)) {
+            props.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable strategy history " + historyFile + ": " + e.getMessage());
+            return;
+        }
+        try {
+            costScale = clamp(Double.parseDouble(props.getProperty("costScale", "1")), 1 / MAX_COST_SCALE, MAX_COST_SCALE);
+        } catch (NumberFormatException ignored) {
+            // keep the kernels' own costs
+        }
+        for (Candidate c : candidates) {
+            String value = props.getProperty(c.key());
+            if (value == null || c.strategy() == StrategyType.SEQUENTIAL) continue;
+            try {
+                efficiency.put(c, clamp(Double.parseDouble(value), MIN_EFFICIENCY, MAX_EFFICIENCY));
+            } catch (NumberFormatException ignored) {
+                // start this candidate from scratch
+            }
+        }
+    }
+
+    private record History(long version, Properties props) {}
+
+    // Called holding the monitor; null when there is nothing new to save
+    private History snapshot() {
+        if (historyFile == null || version == savedVersion) return null;
+        Properties props = new Properties();
+        efficiency.forEach((c, e) -> props.setProperty(c.key(), String.format(Locale.ROOT, "%.4f", e)));
+        props.setProperty("costScale", String.format(Locale.ROOT, "%.4f", costScale));
+        props.setProperty("availableProcessors", String.valueOf(cores));
+        savedVersion = version;
+        lastSaveNanos = System.nanoTime();
+        return new History(version, props);
+    }
+
+    private void write(History history) {
+        synchronized (fileLock) {
+            if (history.version() <= writtenVersion) return;
+            try {
+                if (historyFile.getParent() != null) Files.createDirectories(historyFile.getParent());
+                try (OutputStream os = Files.newOutputStream(historyFile)) {
+                    history.props().store(os, "Learned strategy cost model: costScale and per-candidate efficiency");
+                }
+                writtenVersion = history.version();
+            } catch (IOException e) {
+                System.err.println("Could not save strategy history " + historyFile + ": " + e.getMessage());
+            }
+        }
+    }
+}
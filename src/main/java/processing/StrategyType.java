@@ -0,0 +1,49 @@
+package processing;
+
+public enum StrategyType {
+    SEQUENTIAL("Sequential"),
+    EXECUTOR_SERVICE("ExecutorService"),
+    FORK_JOIN("ForkJoin"),
+    PARALLEL_STREAM("ParallelStream"),
+    VIRTUAL_THREADS("VirtualThreads");
+
+    private final String label;
+
+    StrategyType(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public ExecutionStrategy create(int numThreads) {
+        return create(WorkerPools.shared(), numThreads);
+    }
+
+    public ExecutionStrategy create(WorkerPools pools, int numThreads) {
+        switch (this) {
+            case SEQUENTIAL:
+                return new SequentialStrategy();
+            case EXECUTOR_SERVICE:
+                return new ExecutorServiceStrategy(pools, numThreads);
+            case FORK_JOIN:
+                return new ForkJoinStrategy(pools, numThreads);
+            case PARALLEL_STREAM:
+                return new ParallelStreamStrategy(pools, numThreads);
+            case VIRTUAL_THREADS:
+                return new VirtualThreadStrategy(numThreads);
+            default:
+                throw new IllegalArgumentException("Unknown strategy");
+        }
+    }
+
+    public static StrategyType fromLabel(String label) {
+        for (StrategyType type : values()) {
+            if (type.label.equalsIgnoreCase(label) || type.name().equalsIgnoreCase(label)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Selected parallel method not implemented yet.");
+    }
+}
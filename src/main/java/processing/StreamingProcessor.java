@@ -0,0 +1,237 @@
+package processing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Filters an image file into another without ever holding either image whole. The encoder is
+ * handed a full-size image whose pixels are produced on demand: when it asks for a row past the
+ * current strip, the next strip is decoded through an ImageReader source region (with the
+ * passes' halo rows above and below), filtered in a heap window, and served from there. Memory
+ * is O(width x strip height) however tall the image is.
+ * <p>
+ * Readers that can seek (BMP, TIFF) decode each region directly; PNG and JPEG readers decode
+ * from the top of the file for every region, so fewer, taller strips trade memory for speed.
+ * Only encoders that write rows top to bottom are supported, which is why the output is PNG or JPEG.
+ */
+public final class StreamingProcessor {
+    /** Output pixels per strip when no strip height is given. */
+    public static final int DEFAULT_STRIP_PIXELS = 1 << 22;
+
+    private final List<ImageProcessor> passes;
+    private final ExecutionStrategy strategy;
+    private final TileScheduler scheduler;
+    private final int stripRows;
+    private final int halo;
+
+    /** {@code stripRows} of 0 sizes strips from DEFAULT_STRIP_PIXELS. */
+    public StreamingProcessor(List<ImageProcessor> passes, ExecutionStrategy strategy, TileScheduler scheduler, int stripRows) {
+        if (stripRows < 0) throw new IllegalArgumentException("Strip height must not be negative");
+        this.passes = List.copyOf(passes);
+        this.strategy = strategy;
+        this.scheduler = scheduler;
+        this.stripRows = stripRows;
+        this.halo = passes.stream().mapToInt(ImageProcessor::halo).sum();
+    }
+
+    public static boolean supportsFormat(String format) {
+        String f = format.toLowerCase(Locale.ROOT);
+        return f.equals("png") || f.equals("jpg") || f.equals("jpeg");
+    }
+
+    public long process(Path source, Path target, String format)
+            throws IOException, InterruptedException, ExecutionException {
+        return process(source, target, format, WriteOptions.DEFAULT);
+    }
+
+    /** Streams {@code source} through the passes into {@code target}; returns the pixel count. */
+    public long process(Path source, Path target, String format, WriteOptions options)
+            throws IOException, InterruptedException, ExecutionException {
+        if (!supportsFormat(format)) throw new IllegalArgumentException("Streaming writes png or jpg, not " + format);
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) throw new IOException("Cannot open " + source);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("Unsupported image format: " + source);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                Strips strips = new Strips(reader);
+                BufferedImage output = strips.image(ImageFiles.supportsAlpha(format));
+                boolean written = false;
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 16)) {
+                    ImageFiles.encode(output, format, options, out);
+                    written = true;
+                } catch (StripFailure e) {
+                    e.rethrow();
+                } finally {
+                    // Don't leave a truncated file behind
+                    if (!written) Files.deleteIfExists(target);
+                }
+                return (long) strips.width * strips.height;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** The strip currently being served and everything needed to produce the next one. */
+    private final class Strips {
+        final ImageReader reader;
+        final int width;
+        final int height;
+        final int rows;
+        final int[] windowA;
+        final int[] windowB;
+        final ImageReadParam param;
+        final BufferedImage decoded;
+
+        // Output rows [stripStart, stripEnd) are result[offset + (y - stripStart) * width + x]
+        int stripStart;
+        int stripEnd;
+        int[] result;
+        int offset;
+        // Element indices of the current strip, for the fast path in getElem
+        int lo;
+        int hi;
+
+        Strips(ImageReader reader) throws IOException {
+            this.reader = reader;
+            this.width = reader.getWidth(0);
+            this.height = reader.getHeight(0);
+            if ((long) width * height > Integer.MAX_VALUE) {
+                throw new IOException("Too many pixels to stream through ImageIO: " + width + "x" + height);
+            }
+            int r = stripRows > 0 ? stripRows : Math.max(DEFAULT_STRIP_PIXELS / width, 4 * halo);
+            this.rows = Math.max(1, Math.min(height, r));
+            int windowRows = Math.min(height, rows + 2 * halo);
+            this.windowA = new int[windowRows * width];
+            this.windowB = new int[windowRows * width];
+            // Every region is decoded into this one image, in the reader's default type; it must
+            // be as tall as the largest region or the reader would clip the halo rows
+            this.decoded = reader.getImageTypes(0).next().createBufferedImage(width, windowRows);
+            this.param = reader.getDefaultReadParam();
+            param.setDestination(decoded);
+        }
+
+        BufferedImage image(boolean alpha) {
+            ColorModel cm = alpha
+                ? ColorModel.getRGBdefault()
+                : new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff);
+            int[] masks = alpha
+                ? new int[] {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000}
+                : new int[] {0x00ff0000, 0x0000ff00, 0x000000ff};
+            WritableRaster raster = Raster.createPackedRaster(new StripDataBuffer(this), width, height, width, masks, null);
+            return new BufferedImage(cm, raster, false, null);
+        }
+
+        int get(int i) {
+            if (i < lo || i >= hi) {
+                int y = i / width;
+                if (y < stripStart) {
+                    throw new IllegalStateException("Streaming output must be read top to bottom");
+                }
+                while (y >= stripEnd) {
+                    next();
+                }
+            }
+            return result[offset + i - lo];
+        }
+
+        private void next() {
+            int y0 = stripEnd;
+            int y1 = Math.min(height, y0 + rows);
+            int top = Math.max(0, y0 - halo);
+            int bottom = Math.min(height, y1 + halo);
+            try {
+                decode(top, bottom);
+                int[] in = windowA;
+                int remaining = halo;
+                // Each pass computes only the rows later passes still need as halo
+                for (ImageProcessor pass : passes) {
+                    remaining -= pass.halo();
+                    int[] out = in == windowA ? windowB : windowA;
+                    int from = Math.max(0, y0 - remaining) - top;
+                    int to = Math.min(height, y1 + remaining) - top;
+                    ImageBuffer src = new ImageBuffer(width, bottom - top, in);
+                    ImageBuffer dst = new ImageBuffer(width, bottom - top, out);
+                    scheduler.run(pass, src, dst, strategy, from, to);
+                    in = out;
+                }
+                result = in;
+            } catch (IOException e) {
+                throw new StripFailure(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StripFailure(e);
+            } catch (ExecutionException e) {
+                throw new StripFailure(e);
+            }
+            stripStart = y0;
+            stripEnd = y1;
+            offset = (y0 - top) * width;
+            lo = y0 * width;
+            hi = y1 * width;
+        }
+
+        private void decode(int top, int bottom) throws IOException {
+            param.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+            reader.read(0, param);
+            decoded.getRGB(0, 0, width, bottom - top, windowA, 0, width);
+        }
+    }
+
+    private static final class StripDataBuffer extends DataBuffer {
+        private final Strips strips;
+
+        StripDataBuffer(Strips strips) {
+            super(DataBuffer.TYPE_INT, strips.width * strips.height);
+            this.strips = strips;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return strips.get(i);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            throw new UnsupportedOperationException("Streaming output is read-only");
+        }
+    }
+
+    /** Carries a checked failure out of DataBuffer.getElem, through the encoder, back to process(). */
+    private static final class StripFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StripFailure(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        void rethrow() throws IOException, InterruptedException, ExecutionException {
+            Throwable cause = getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof InterruptedException ie) throw ie;
+            if (cause instanceof ExecutionException ee) throw ee;
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package processing;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a kernel over an OffHeapImage one strip of rows at a time. Each strip is copied, with
+ * the kernel's halo rows above and below, into a pooled heap window that is reused for every strip,
+ * and the strategy parallelises the strip as usual. A window that doesn't touch the image's
+ * top or bottom edge only ever gets asked for rows at least {@code halo} away from its own
+ * edges, so kernels see exactly the pixels they would in the full image.
+ */
+final class StripProcessor {
+    /** Pixels per strip, before halo rows; two windows of this size are the only heap use. */
+    static final int STRIP_PIXELS = 1 << 22;
+
+    private StripProcessor() {}
+
+    static void run(ImageProcessor kernel, OffHeapImage src, OffHeapImage dst, ExecutionStrategy strategy,
+                    TileScheduler scheduler, Progress progress) throws InterruptedException, ExecutionException {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        int halo = kernel.halo();
+        int stripRows = stripRows(w, h, halo);
+        int windowRows = Math.min(h, stripRows + 2 * halo);
+        PixelPool pool = PixelPool.shared();
+        int[] in = pool.lease(windowRows * w);
+        int[] out = pool.lease(windowRows * w);
+        for (int y0 = 0; y0 < h; y0 += stripRows) {
+            int y1 = Math.min(h, y0 + stripRows);
+            int top = Math.max(0, y0 - halo);
+            int bottom = Math.min(h, y1 + halo);
+            src.readRows(top, bottom, in, 0);
+            ImageBuffer window = new ImageBuffer(w, bottom - top, in);
+            ImageBuffer result = new ImageBuffer(w, bottom - top, out);
+            scheduler.run(kernel, window, result, strategy, y0 - top, y1 - top, progress);
+            dst.writeRows(y0, y1, out, (y0 - top) * w);
+        }
+        // Only after every strip succeeded; a failed strip's workers may still be using them
+        pool.release(in);
+        pool.release(out);
+    }
+
+    static int stripRows(int width, int height, int halo) {
+        // Keep the halo rows, which are read twice, a small share of each window
+        int rows = Math.max(STRIP_PIXELS / width, 4 * halo);
+        return Math.max(1, Math.min(height, rows));
+    }
+}
@@ -0,0 +1,113 @@
+package processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs subtasks on virtual threads that never outlive the block that forked them, with the
+ * shutdown-on-failure policy of StructuredTaskScope.ShutdownOnFailure: the first subtask to
+ * fail interrupts its siblings and stops new forks, and {@link #join()} reports that failure.
+ * StructuredTaskScope itself is a preview API in Java 21, so it would need --enable-preview on
+ * every launch. Only the thread that opened the scope may fork and join.
+ * <pre>
+ * try (TaskScope scope = new TaskScope("tile-")) {
+ *     for (...) scope.fork(() -> ...);
+ *     scope.join();
+ * }
+ * </pre>
+ */
+public final class TaskScope implements AutoCloseable {
+    @FunctionalInterface
+    public interface Subtask {
+        void run() throws Exception;
+    }
+
+    private final Thread owner = Thread.currentThread();
+    private final Thread.Builder builder;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean shutdown;
+
+    public TaskScope(String threadPrefix) {
+        this.builder = Thread.ofVirtual().name(threadPrefix, 0);
+    }
+
+    /** Starts {@code subtask} on a new virtual thread; does nothing once the scope has shut down. */
+    public void fork(Subtask subtask) {
+        checkOwner();
+        Thread thread = builder.unstarted(() -> {
+            try {
+                subtask.run();
+            } catch (Throwable e) {
+                // Siblings interrupted by the shutdown fail too; only the first failure is reported
+                if (failure.compareAndSet(null, e)) shutdown();
+            }
+        });
+        // Under the lock, so a concurrent shutdown either sees this thread or stops the fork
+        synchronized (threads) {
+            if (shutdown) return;
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits for every subtask, then throws the first failure. Interrupting the waiting thread
+     * shuts the scope down, so its subtasks are interrupted as well.
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        checkOwner();
+        try {
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            shutdown();
+            throw e;
+        }
+        Throwable e = failure.get();
+        if (e != null) throw new ExecutionException(e);
+    }
+
+    /** Interrupts every running subtask and refuses new ones. */
+    public void shutdown() {
+        synchronized (threads) {
+            shutdown = true;
+            for (Thread thread : threads) thread.interrupt();
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /** Shuts down and waits for every subtask, so none outlives the scope. */
+    @Override
+    public void close() {
+        checkOwner();
+        if (!allDone()) shutdown();
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private boolean allDone() {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) throw new IllegalStateException("Only the scope's owner may fork and join");
+    }
+}
@@ -0,0 +1,56 @@
+package processing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Filtered tiles kept for reuse while the user pans and zooms, evicted least recently used
+ * first once their pixels exceed a byte budget. Keys don't identify the image, so a cache
+ * serves one image at a time and is cleared when another is loaded. Thread-safe.
+ */
+public final class TileCache {
+    /** One tile of one pyramid level, filtered with one filter chain. */
+    public record Key(FilterChain chain, int level, int tileX, int tileY) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, ImageBuffer> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    public TileCache(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Cache size must not be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized ImageBuffer get(Key key) {
+        return tiles.get(key);
+    }
+
+    public synchronized void put(Key key, ImageBuffer tile) {
+        ImageBuffer old = tiles.put(key, tile);
+        if (old != null) bytes -= sizeOf(old);
+        bytes += sizeOf(tile);
+        Iterator<Map.Entry<Key, ImageBuffer>> eldest = tiles.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    private static long sizeOf(ImageBuffer tile) {
+        return 4L * tile.getWidth() * tile.getHeight();
+    }
+}
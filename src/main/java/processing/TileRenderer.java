@@ -0,0 +1,96 @@
+package processing;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Filters an image one square tile at a time, at any level of its pyramid, so a viewer only
+ * pays for the part of the image on screen at the resolution the screen can show. Each tile
+ * is filtered in a window extended by the passes' halo, which makes it identical to the same
+ * region of the whole level filtered at once. Finished tiles go into a shared TileCache.
+ * Thread-safe; tiles are filtered sequentially, callers render several tiles in parallel.
+ */
+public final class TileRenderer {
+    public static final int TILE_SIZE = 256;
+
+    private final ImagePyramid pyramid;
+    private final FilterChain chain;
+    private final KernelMode mode;
+    private final TileCache cache;
+    private final ExecutionStrategy strategy = StrategyType.SEQUENTIAL.create(1);
+
+    public TileRenderer(ImagePyramid pyramid, FilterChain chain, KernelMode mode, TileCache cache) {
+        this.pyramid = pyramid;
+        this.chain = chain;
+        this.mode = mode;
+        this.cache = cache;
+    }
+
+    public ImagePyramid pyramid() {
+        return pyramid;
+    }
+
+    /** Level {@code k}, or the deepest level if {@code k} is deeper. */
+    public int clampLevel(int k) {
+        return Math.min(k, pyramid.depth());
+    }
+
+    public int tilesX(int level) {
+        return Math.ceilDiv(pyramid.level(level).getWidth(), TILE_SIZE);
+    }
+
+    public int tilesY(int level) {
+        return Math.ceilDiv(pyramid.level(level).getHeight(), TILE_SIZE);
+    }
+
+    /** The tile if it has already been rendered, else null. */
+    public ImageBuffer cached(int level, int tileX, int tileY) {
+        return cache.get(key(level, tileX, tileY));
+    }
+
+    /** Tile ({@code tileX}, {@code tileY}) of {@code level}; edge tiles are smaller than TILE_SIZE. */
+    public ImageBuffer render(int level, int tileX, int tileY) throws InterruptedException, ExecutionException {
+        TileCache.Key key = key(level, tileX, tileY);
+        ImageBuffer tile = cache.get(key);
+        if (tile != null) return tile;
+
+        if (level < 0 || level > pyramid.depth()) throw new IllegalArgumentException("No pyramid level " + level);
+        ImageBuffer source = pyramid.level(level);
+        int w = source.getWidth();
+        int h = source.getHeight();
+        int x0 = tileX * TILE_SIZE;
+        int y0 = tileY * TILE_SIZE;
+        int x1 = Math.min(w, x0 + TILE_SIZE);
+        int y1 = Math.min(h, y0 + TILE_SIZE);
+        if (x0 >= w || y0 >= h || tileX < 0 || tileY < 0) {
+            throw new IllegalArgumentException("No tile " + tileX + "," + tileY + " at level " + level);
+        }
+
+        List<ImageProcessor> passes = chain.downscaled(1 << level).passes(mode);
+        int halo = passes.stream().mapToInt(ImageProcessor::halo).sum();
+        int wx0 = Math.max(0, x0 - halo);
+        int wy0 = Math.max(0, y0 - halo);
+        int ww = Math.min(w, x1 + halo) - wx0;
+        int wh = Math.min(h, y1 + halo) - wy0;
+        int[] in = source.getPixels();
+        int[] window = new int[ww * wh];
+        for (int y = 0; y < wh; y++) {
+            System.arraycopy(in, (wy0 + y) * w + wx0, window, y * ww, ww);
+        }
+
+        int[] out = ImageEngine.apply(new ImageBuffer(ww, wh, window), passes, strategy).getPixels();
+        int tw = x1 - x0;
+        int th = y1 - y0;
+        int[] pixels = new int[tw * th];
+        for (int y = 0; y < th; y++) {
+            System.arraycopy(out, (y0 - wy0 + y) * ww + (x0 - wx0), pixels, y * tw, tw);
+        }
+        tile = new ImageBuffer(tw, th, pixels);
+        cache.put(key, tile);
+        return tile;
+    }
+
+    private TileCache.Key key(int level, int tileX, int tileY) {
+        return new TileCache.Key(chain, level, tileX, tileY);
+    }
+}
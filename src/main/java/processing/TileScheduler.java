@@ -0,0 +1,145 @@
+package processing;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decides how a kernel's output is cut into independent regions before a strategy runs them.
+ * {@link #rowBands()} keeps the classic full-width bands. {@link #tiles} cuts the image into a
+ * 2D grid so each work item's source footprint (tile plus halo) stays cache-sized even for very
+ * wide panoramas; tiles are claimed one at a time, so uneven tiles balance themselves.
+ */
+public final class TileScheduler {
+    /** Source pixels a tile may read (tile plus halo) when the size is chosen automatically. */
+    static final int AUTO_TILE_PIXELS = 64 * 1024;
+    private static final int MIN_TILE_SIDE = 16;
+    /** Output pixels between progress updates and cancellation checks when a band is split up. */
+    static final int PROGRESS_PIXELS = 1 << 20;
+    // Split bands keep at least this many rows per halo row, so re-reading halos stays cheap
+    private static final int PROGRESS_HALO_FACTOR = 16;
+
+    private final boolean tiled;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    private TileScheduler(boolean tiled, int tileWidth, int tileHeight) {
+        this.tiled = tiled;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    public static TileScheduler rowBands() {
+        return new TileScheduler(false, 0, 0);
+    }
+
+    public static TileScheduler tiles(int tileWidth, int tileHeight) {
+        if (tileWidth < 1 || tileHeight < 1) throw new IllegalArgumentException("Tile size must be positive");
+        return new TileScheduler(true, tileWidth, tileHeight);
+    }
+
+    /** Square tiles sized from each kernel's halo so tile plus halo fits AUTO_TILE_PIXELS. */
+    public static TileScheduler autoTiles() {
+        return new TileScheduler(true, 0, 0);
+    }
+
+    /** Parses "bands", "auto" or "WxH" (e.g. "256x128"). */
+    public static TileScheduler parse(String spec) {
+        String s = spec.trim().toLowerCase(java.util.Locale.ROOT);
+        if (s.equals("bands") || s.equals("rows")) return rowBands();
+        if (s.equals("auto")) return autoTiles();
+        int x = s.indexOf('x');
+        if (x < 0) {
+            int side = Integer.parseInt(s);
+            return tiles(side, side);
+        }
+        return tiles(Integer.parseInt(s.substring(0, x)), Integer.parseInt(s.substring(x + 1)));
+    }
+
+    public boolean isTiled() {
+        return tiled;
+    }
+
+    public void run(ImageProcessor kernel, ImageBuffer src, ImageBuffer dst, ExecutionStrategy strategy)
+            throws InterruptedException, ExecutionException {
+        run(kernel, src, dst, strategy, 0, src.getHeight());
+    }
+
+    /** Computes only output rows [rowStart, rowEnd). */
+    public void run(ImageProcessor kernel, ImageBuffer src, ImageBuffer dst, ExecutionStrategy strategy,
+                    int rowStart, int rowEnd) throws InterruptedException, ExecutionException {
+        run(kernel, src, dst, strategy, rowStart, rowEnd, Progress.NONE);
+    }
+
+    /**
+     * Like {@link #run(ImageProcessor, ImageBuffer, ImageBuffer, ExecutionStrategy, int, int)},
+     * reporting each finished band or tile to {@code progress} and stopping with a
+     * CancellationException once it is cancelled. Bands are cut into pieces of about
+     * PROGRESS_PIXELS so even a sequential run reports and stops promptly.
+     */
+    public void run(ImageProcessor kernel, ImageBuffer src, ImageBuffer dst, ExecutionStrategy strategy,
+                    int rowStart, int rowEnd, Progress progress) throws InterruptedException, ExecutionException {
+        try {
+            runRegions(kernel, src, dst, strategy, rowStart, rowEnd, progress);
+        } catch (ExecutionException e) {
+            if (progress.isCancelled()) throw new CancellationException("Processing cancelled");
+            throw e;
+        }
+    }
+
+    private void runRegions(ImageProcessor kernel, ImageBuffer src, ImageBuffer dst, ExecutionStrategy strategy,
+                            int rowStart, int rowEnd, Progress progress) throws InterruptedException, ExecutionException {
+        int width = src.getWidth();
+        int height = rowEnd - rowStart;
+        if (!tiled) {
+            int grain = strategy.rowGrain(kernel, width, height);
+            if (progress == Progress.NONE) {
+                strategy.execute(height, grain, (from, to) ->
+                    kernel.processRegion(src, dst, 0, rowStart + from, width, rowStart + to));
+                return;
+            }
+            // At least one row, or rows wider than PROGRESS_PIXELS with no halo would never advance
+            int step = Math.max(1, Math.max(PROGRESS_PIXELS / width, PROGRESS_HALO_FACTOR * kernel.halo()));
+            strategy.execute(height, grain, (from, to) -> {
+                for (int y = from; y < to; y += step) {
+                    int end = Math.min(to, y + step);
+                    progress.checkCancelled();
+                    kernel.processRegion(src, dst, 0, rowStart + y, width, rowStart + end);
+                    progress.add((long) (end - y) * width);
+                }
+            });
+            return;
+        }
+        int tw = tileWidth > 0 ? tileWidth : autoSide(kernel.halo());
+        int th = tileHeight > 0 ? tileHeight : autoSide(kernel.halo());
+        tw = Math.min(tw, width);
+        th = Math.min(th, height);
+        final int cols = Math.ceilDiv(width, tw);
+        final int rows = Math.ceilDiv(height, th);
+        final int stepX = tw, stepY = th;
+        // Row-major tile order: neighbouring tiles share halo rows that are likely still cached
+        strategy.execute(cols * rows, 1, (from, to) -> {
+            for (int t = from; t < to; t++) {
+                int x0 = (t % cols) * stepX;
+                int y0 = rowStart + (t / cols) * stepY;
+                int x1 = Math.min(width, x0 + stepX);
+                int y1 = Math.min(rowEnd, y0 + stepY);
+                progress.checkCancelled();
+                kernel.processRegion(src, dst, x0, y0, x1, y1);
+                progress.add((long) (x1 - x0) * (y1 - y0));
+            }
+        });
+    }
+
+    static int autoSide(int halo) {
+        int side = (int) Math.sqrt(AUTO_TILE_PIXELS) - 2 * halo;
+        // Large halos would leave a sliver of useful output, so let the tile grow instead
+        side = Math.max(side, 4 * halo);
+        return Math.max(MIN_TILE_SIDE, side);
+    }
+
+    @Override
+    public String toString() {
+        if (!tiled) return "bands";
+        return tileWidth > 0 ? tileWidth + "x" + tileHeight : "auto";
+    }
+}
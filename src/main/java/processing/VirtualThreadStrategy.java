@@ -0,0 +1,55 @@
+package processing;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * One virtual thread per chunk (a row band or a tile), forked into a {@link TaskScope} so the
+ * first failing chunk cancels the rest. Virtual threads are cheap but not faster at arithmetic,
+ * so a fair semaphore of numThreads permits bounds how many chunks run their kernel at once.
+ * The budget belongs to the strategy, not to one call: images sharing a strategy, e.g. every
+ * image of a virtual-thread batch, queue their tiles for the same permits, and an image's
+ * blocking decode or encode never holds one (Java 21).
+ */
+public final class VirtualThreadStrategy implements ExecutionStrategy {
+    // Chunks per permit, so tiles of concurrent images interleave and uneven chunks even out
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final int numThreads;
+    private final Semaphore cpu;
+
+    public VirtualThreadStrategy(int numThreads) {
+        this.numThreads = numThreads;
+        this.cpu = new Semaphore(numThreads, true);
+    }
+
+    @Override
+    public void execute(int items, int grain, RangeTask task) throws InterruptedException, ExecutionException {
+        int step = Math.max(1, grain);
+        try (TaskScope scope = new TaskScope("image-vt-")) {
+            for (int from = 0; from < items && !scope.isShutdown(); from += step) {
+                int start = from;
+                int end = Math.min(items, from + step);
+                scope.fork(() -> {
+                    cpu.acquire();
+                    try {
+                        task.run(start, end);
+                    } finally {
+                        cpu.release();
+                    }
+                });
+            }
+            scope.join();
+        }
+    }
+
+    @Override
+    public int rowGrain(ImageProcessor kernel, int width, int height) {
+        return Math.max(1, Math.ceilDiv(height, numThreads * CHUNKS_PER_THREAD));
+    }
+
+    @Override
+    public int parallelism() {
+        return numThreads;
+    }
+}
@@ -0,0 +1,136 @@
+package processing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived worker pools shared by the pooled strategies. Pools are created on first use and
+ * reused for every image, so worker threads (and the code they have JIT-compiled) survive from
+ * one image to the next. A requested thread count never changes what another caller gets, so
+ * concurrent callers with different counts (server requests, batch auto mode) are safe: the
+ * executor only ever grows and each call caps how many of its workers it occupies, while
+ * fork/join and stream pools are kept per thread count. Idle fork/join workers exit after a
+ * minute, so unused sizes cost no threads. The default size comes from the
+ * {@code imageprocessor.threads} system property and defaults to the number of available processors.
+ */
+public final class WorkerPools {
+    private static final WorkerPools SHARED = new WorkerPools(
+        Integer.getInteger("imageprocessor.threads", Runtime.getRuntime().availableProcessors()));
+
+    private final int defaultThreads;
+    private ThreadPoolExecutor executor;
+    private final Map<Integer, ForkJoinPool> forkJoinPools = new HashMap<>();
+    private final Map<Integer, ForkJoinPool> streamPools = new HashMap<>();
+    private boolean shutdown;
+
+    public WorkerPools(int defaultThreads) {
+        this.defaultThreads = Math.max(1, defaultThreads);
+    }
+
+    public static WorkerPools shared() {
+        return SHARED;
+    }
+
+    public int getDefaultThreads() {
+        return defaultThreads;
+    }
+
+    /**
+     * An executor with at least {@code threads} workers. It is never shrunk, because other
+     * callers may be using more; callers submit at most {@code threads} tasks at a time.
+     */
+    public synchronized ExecutorService executor(int threads) {
+        checkOpen();
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory("image-worker-"));
+            executor.prestartAllCoreThreads();
+        } else if (threads > executor.getMaximumPoolSize()) {
+            // Core size may never exceed max size, so max grows first
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+            executor.prestartAllCoreThreads();
+        }
+        return executor;
+    }
+
+    /** The fork/join pool with exactly {@code threads} parallelism. */
+    public synchronized ForkJoinPool forkJoinPool(int threads) {
+        checkOpen();
+        return forkJoinPools.computeIfAbsent(threads, n -> newForkJoinPool(n, "image-fj" + n + "-"));
+    }
+
+    /**
+     * Pool that parallel streams are run inside, so they get the requested parallelism and
+     * never compete with other parallel streams on the JVM-wide common pool.
+     */
+    public synchronized ForkJoinPool streamPool(int threads) {
+        checkOpen();
+        return streamPools.computeIfAbsent(threads, n -> newForkJoinPool(n, "image-stream" + n + "-"));
+    }
+
+    /** Creates the pools for {@code threads} ahead of use, e.g. when the user changes the thread count. */
+    public void resize(int threads) {
+        executor(threads);
+        forkJoinPool(threads);
+        streamPool(threads);
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (executor != null) executor.shutdown();
+        forkJoinPools.values().forEach(ForkJoinPool::shutdown);
+        streamPools.values().forEach(ForkJoinPool::shutdown);
+    }
+
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean done = executor == null || executor.awaitTermination(timeout, unit);
+        for (Map<Integer, ForkJoinPool> pools : List.of(forkJoinPools, streamPools)) {
+            for (ForkJoinPool pool : pools.values()) {
+                long left = Math.max(0, deadline - System.nanoTime());
+                done &= pool.awaitTermination(left, TimeUnit.NANOSECONDS);
+            }
+        }
+        return done;
+    }
+
+    private static ForkJoinPool newForkJoinPool(int threads, String prefix) {
+        // The pool index isn't assigned until the worker is registered, so it can't name the thread
+        AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(threads, pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    private void checkOpen() {
+        if (shutdown) throw new IllegalStateException("Worker pools have been shut down");
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        WorkerThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
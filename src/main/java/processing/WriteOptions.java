@@ -0,0 +1,15 @@
+package processing;
+
+/** Encoder settings; each format uses only its own setting. */
+public record WriteOptions(int pngLevel, float jpegQuality) {
+    public static final WriteOptions DEFAULT = new WriteOptions(4, 0.75f);
+
+    public WriteOptions {
+        if (pngLevel < 0 || pngLevel > 9) {
+            throw new IllegalArgumentException("PNG compression level must be between 0 and 9");
+        }
+        if (!(jpegQuality > 0 && jpegQuality <= 1)) {
+            throw new IllegalArgumentException("JPEG quality must be above 0 and at most 1");
+        }
+    }
+}
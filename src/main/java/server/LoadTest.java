@@ -0,0 +1,181 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import processing.ImageBuffer;
+import processing.ImageFiles;
+import processing.StrategyType;
+import processing.WriteOptions;
+
+/**
+ * Closed-loop load generator for ProcessingServer: {@code concurrency} virtual threads each send
+ * a request, wait for the answer and send the next, until {@code requests} have completed. Prints
+ * throughput and p50/p90/p99 latency of the successful requests, and how many were refused.
+ */
+public final class LoadTest {
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: server.LoadTest [options]",
+        "  -u, --url <url>          server to load (default http://localhost:8080/process)",
+        "  -q, --query <params>     query string for each request (default filter=BLUR&radius=2)",
+        "  -c, --concurrency <n>    requests in flight at once (default 16)",
+        "  -n, --requests <n>       requests to measure (default 500)",
+        "      --warmup <n>         requests sent first and not measured (default 50)",
+        "      --image <file>       image to send (default: a synthetic PNG of --size)",
+        "      --size <WxH>         synthetic image size (default 512x384)");
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080/process";
+        String query = "filter=BLUR&radius=2";
+        int concurrency = 16;
+        int requests = 500;
+        int warmup = 50;
+        String image = null;
+        int width = 512;
+        int height = 384;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-h", "--help" -> {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    case "-u", "--url" -> url = args[++i];
+                    case "-q", "--query" -> query = args[++i];
+                    case "-c", "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "-n", "--requests" -> requests = Integer.parseInt(args[++i]);
+                    case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                    case "--image" -> image = args[++i];
+                    case "--size" -> {
+                        String[] wh = args[++i].toLowerCase(Locale.ROOT).split("x");
+                        width = Integer.parseInt(wh[0]);
+                        height = Integer.parseInt(wh[1]);
+                    }
+                    default -> throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+            if (concurrency < 1 || requests < 1 || warmup < 0) throw new IllegalArgumentException("Counts must be positive.");
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value." : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        byte[] body = image != null ? Files.readAllBytes(Paths.get(image)) : syntheticPng(width, height);
+        URI target = URI.create(url + (query.isEmpty() ? "" : "?" + query));
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder().executor(threads).connectTimeout(Duration.ofSeconds(10)).build();
+            if (warmup > 0) run(client, target, body, concurrency, warmup, threads);
+            System.out.printf("Sending %d request(s) of %d bytes, %d at a time, to %s%n", requests, body.length, concurrency, target);
+            run(client, target, body, concurrency, requests, threads).print();
+        }
+    }
+
+    private record Result(long[] latencies, long rejected, long failed, String firstFailure, long nanos) {
+        void print() {
+            long ok = latencies.length;
+            double seconds = nanos / 1e9;
+            System.out.printf("%d ok, %d rejected (503), %d failed in %.2f s: %.1f requests/s%n",
+                ok, rejected, failed, seconds, ok / seconds);
+            if (firstFailure != null) System.out.println("first failure: " + firstFailure);
+            if (ok == 0) return;
+            Arrays.sort(latencies);
+            System.out.printf("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                percentile(0.50), percentile(0.90), percentile(0.99), latencies[latencies.length - 1] / 1e6);
+        }
+
+        double percentile(double p) {
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    private static Result run(HttpClient client, URI target, byte[] body, int concurrency, int requests,
+                              ExecutorService threads) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicLongArray latencies = new AtomicLongArray(requests);
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        AtomicReference<String> firstFailure = new AtomicReference<>();
+        HttpRequest request = HttpRequest.newBuilder(target)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .timeout(Duration.ofMinutes(1))
+            .build();
+        long start = System.nanoTime();
+        List<Future<?>> clients = new ArrayList<>();
+        for (int c = 0; c < concurrency; c++) {
+            clients.add(threads.submit(() -> {
+                while (next.getAndIncrement() < requests) {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() == 200) {
+                            latencies.set(succeeded.getAndIncrement(), System.nanoTime() - sent);
+                        } else if (response.statusCode() == 503) {
+                            rejected.increment();
+                        } else {
+                            failed.increment();
+                            firstFailure.compareAndSet(null, "HTTP " + response.statusCode() + ": " + new String(response.body(), StandardCharsets.UTF_8).strip());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        failed.increment();
+                        firstFailure.compareAndSet(null, e.toString());
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : clients) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                failed.increment();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long[] measured = new long[succeeded.get()];
+        for (int i = 0; i < measured.length; i++) measured[i] = latencies.get(i);
+        return new Result(measured, rejected.sum(), failed.sum(), firstFailure.get(), nanos);
+    }
+
+    // Gradient plus noise, so compression and filtering do realistic work
+    private static byte[] syntheticPng(int width, int height) throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = ((x * 255) / width + random.nextInt(32)) & 0xff;
+                int g = ((y * 255) / height + random.nextInt(32)) & 0xff;
+                pixels[y * width + x] = 0xff000000 | (r << 16) | (g << 8) | random.nextInt(256);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageFiles.write(new ImageBuffer(width, height, pixels), "png", out, WriteOptions.DEFAULT, StrategyType.SEQUENTIAL.create(1));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,399 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import processing.ExecutionStrategy;
+import processing.FilterChain;
+import processing.FilterOptions;
+import processing.FilterType;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageFiles;
+import processing.ImageProcessor;
+import processing.ImageTooLargeException;
+import processing.KernelMode;
+import processing.Kernels;
+import processing.Metrics;
+import processing.PixelPool;
+import processing.Progress;
+import processing.StrategySelector;
+import processing.StrategyType;
+import processing.TileScheduler;
+import processing.WorkerPools;
+import processing.WriteOptions;
+
+/**
+ * Headless HTTP front end on the JDK's built-in server. Requests run on a bounded set of handler
+ * threads, one per admissible request plus a few spare, and the CPU work goes to the shared
+ * worker pools, so neither thread count nor pixel work grows with the number of open connections.
+ * Small images are coalesced into batches (see RequestBatcher). A semaphore admits at most
+ * {@code maxPending} requests at a time, running or waiting; anything beyond that is refused with
+ * 503 straight away rather than queued, which keeps heap use bounded under overload; when even
+ * the handler threads are all busy the refusal skips reading the body and closes the connection.
+ * A request's {@code threads} only picks the size of the pool it runs on; pools are never
+ * resized, so it can't slow down other requests.
+ * <pre>
+ *   POST /process?filter=BLUR&amp;radius=4&amp;strategy=ForkJoin&amp;format=png   (body: the image)
+ *   GET  /stats
+ *   GET  /metrics[?format=csv]
+ *   GET  /health
+ * </pre>
+ */
+public final class ProcessingServer {
+    /** Server limits; sizes are in bytes and pixels. */
+    public record Config(int port, int threads, int maxPending, int maxBodyBytes, long maxPixels,
+                         long batchPixels, long batchWindowMicros) {
+        public static Config defaults() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new Config(8080, cores, 64, 64 << 20, 100_000_000L, 512 * 512, 1000);
+        }
+    }
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: server.ProcessingServer [options]",
+        "  -p, --port <n>           port to listen on, on the loopback interface (default 8080)",
+        "  -t, --threads <n>        worker threads for filtering (default: available processors)",
+        "      --max-pending <n>    requests admitted at once, running or waiting; more get 503 (default 64)",
+        "      --max-body-mb <n>    largest accepted request body (default 64)",
+        "      --max-megapixels <n> largest accepted image (default 100)",
+        "      --batch-pixels <n>   images up to this many pixels are batched (default 262144, 0 disables)",
+        "      --batch-window-us <n> how long a batch waits for more images (default 1000)");
+
+    // Handler threads beyond maxPending, for /stats, /metrics, /health and quick rejections
+    private static final int SPARE_HANDLERS = 4;
+    // Set while a request runs on the server's dispatcher thread because every handler was busy
+    private static final ThreadLocal<Boolean> OVERFLOW = ThreadLocal.withInitial(() -> false);
+
+    private final Config config;
+    private final HttpServer http;
+    // Platform threads: the server's body streams block under a monitor, which would pin virtual
+    // threads to their carriers and stall every other request behind one slow upload
+    private final ThreadPoolExecutor requestThreads;
+    private final Semaphore admission;
+    private final ExecutionStrategy ioStrategy;
+    private final RequestBatcher batcher;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder pixels = new LongAdder();
+
+    public ProcessingServer(Config config) throws IOException {
+        this.config = config;
+        this.admission = new Semaphore(config.maxPending());
+        this.ioStrategy = StrategyType.FORK_JOIN.create(WorkerPools.shared(), config.threads());
+        this.batcher = new RequestBatcher(ioStrategy, 4 * config.threads(), config.batchWindowMicros(), TimeUnit.MICROSECONDS);
+        this.requestThreads = new ThreadPoolExecutor(0, config.maxPending() + SPARE_HANDLERS, 30, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), Thread.ofPlatform().name("http-handler-", 1).daemon(true).factory(),
+            (exchange, executor) -> overflow(exchange));
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.port()), 0);
+        http.setExecutor(requestThreads);
+        http.createContext("/process", this::handleProcess);
+        http.createContext("/stats", this::handleStats);
+        http.createContext("/metrics", this::handleMetrics);
+        http.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok\n"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config d = Config.defaults();
+        int port = d.port();
+        int threads = d.threads();
+        int maxPending = d.maxPending();
+        int maxBodyMb = d.maxBodyBytes() >> 20;
+        long maxMegapixels = d.maxPixels() / 1_000_000;
+        long batchPixels = d.batchPixels();
+        long batchWindow = d.batchWindowMicros();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-h", "--help" -> {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    case "-p", "--port" -> port = Integer.parseInt(args[++i]);
+                    case "-t", "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--max-pending" -> maxPending = Integer.parseInt(args[++i]);
+                    case "--max-body-mb" -> maxBodyMb = Integer.parseInt(args[++i]);
+                    case "--max-megapixels" -> maxMegapixels = Long.parseLong(args[++i]);
+                    case "--batch-pixels" -> batchPixels = Long.parseLong(args[++i]);
+                    case "--batch-window-us" -> batchWindow = Long.parseLong(args[++i]);
+                    default -> throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+            if (threads < 1 || maxPending < 1) throw new IllegalArgumentException("Thread and pending counts must be at least 1.");
+            if (maxBodyMb < 1 || maxBodyMb > 2047 || maxMegapixels < 1) throw new IllegalArgumentException("Size limits out of range.");
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value." : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        ProcessingServer server = new ProcessingServer(new Config(port, threads, maxPending, maxBodyMb << 20,
+            maxMegapixels * 1_000_000, batchPixels, batchWindow));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+        System.out.printf("Listening on http://localhost:%d/process with %d worker thread(s), %d pending request(s) max%n",
+            server.port(), threads, maxPending);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /** The bound port, which differs from the configured one when that was 0. */
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    public void stop() {
+        http.stop(1);
+        requestThreads.shutdownNow();
+        batcher.close();
+    }
+
+    // Every handler is busy: the dispatcher runs the exchange itself, and /process only refuses it
+    private static void overflow(Runnable exchange) {
+        OVERFLOW.set(true);
+        try {
+            exchange.run();
+        } finally {
+            OVERFLOW.set(false);
+        }
+    }
+
+    private void handleProcess(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "text/plain", "POST an image to /process\n");
+                return;
+            }
+            if (OVERFLOW.get() || !admission.tryAcquire()) {
+                rejected.increment();
+                if (OVERFLOW.get()) {
+                    // Never read a body on the dispatcher; the connection is dropped instead of reused
+                    exchange.getResponseHeaders().set("Connection", "close");
+                } else {
+                    discardBody(exchange);
+                }
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "text/plain", "Too many pending requests\n");
+                return;
+            }
+            accepted.increment();
+            try {
+                process(exchange);
+            } catch (BadRequest e) {
+                failed.increment();
+                respond(exchange, e.status, "text/plain", e.getMessage() + "\n");
+            } catch (Exception e) {
+                failed.increment();
+                respond(exchange, 500, "text/plain", "Processing failed: " + e.getMessage() + "\n");
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    private void process(HttpExchange exchange) throws Exception {
+        Map<String, String> params = query(exchange);
+        FilterChain chain;
+        StrategyType strategyType;
+        WriteOptions writeOptions;
+        String format = params.getOrDefault("format", "png").toLowerCase(Locale.ROOT);
+        int threads;
+        try {
+            chain = params.containsKey("chain")
+                ? FilterChain.parse(params.get("chain"))
+                : FilterChain.of(FilterType.valueOf(params.getOrDefault("filter", "GRAYSCALE").toUpperCase(Locale.ROOT).replace(' ', '_')),
+                    new FilterOptions(Integer.parseInt(params.getOrDefault("radius", String.valueOf(FilterOptions.DEFAULT.blurRadius())))));
+            String strategy = params.getOrDefault("strategy", StrategyType.FORK_JOIN.getLabel());
+            strategyType = strategy.equalsIgnoreCase("auto") ? null : StrategyType.fromLabel(strategy);
+            // Capped at the server's count: a request runs on the pool of its own size,
+            // never resizing a shared one
+            threads = Math.min(config.threads(), Integer.parseInt(params.getOrDefault("threads", String.valueOf(config.threads()))));
+            if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+            writeOptions = new WriteOptions(
+                Integer.parseInt(params.getOrDefault("level", String.valueOf(WriteOptions.DEFAULT.pngLevel()))),
+                Float.parseFloat(params.getOrDefault("quality", String.valueOf(WriteOptions.DEFAULT.jpegQuality()))));
+            if (!format.equals("png") && !format.equals("jpg") && !format.equals("jpeg")) {
+                throw new IllegalArgumentException("format must be png or jpg");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequest(400, e.getMessage());
+        }
+        KernelMode mode = Boolean.parseBoolean(params.get("simd")) && Kernels.isSimdAvailable() ? KernelMode.SIMD : KernelMode.SCALAR;
+        List<ImageProcessor> passes = chain.passes(mode);
+
+        byte[] body = readBody(exchange);
+        Metrics.Job metrics = Metrics.shared().start();
+        ImageBuffer input;
+        try {
+            Metrics.Timer decode = metrics.time(Metrics.Stage.DECODE);
+            input = ImageFiles.read(ByteBuffer.wrap(body), metrics.meter(Metrics.Stage.DECODE, ioStrategy), config.maxPixels());
+            metrics.pixels((long) input.getWidth() * input.getHeight());
+            decode.close();
+        } catch (ImageTooLargeException e) {
+            throw new BadRequest(413, e.getMessage());
+        } catch (IOException e) {
+            throw new BadRequest(400, "Could not decode the image: " + e.getMessage());
+        }
+        long count = (long) input.getWidth() * input.getHeight();
+        long start = System.nanoTime();
+        ImageBuffer output;
+        boolean batched = count <= config.batchPixels();
+        // A batched request's filter time includes its wait for the batch to close
+        Metrics.Timer filter = metrics.time(Metrics.Stage.FILTER);
+        if (batched) {
+            metrics.strategy("batched");
+            output = awaitBatch(input, passes);
+        } else if (strategyType == null) {
+            StrategySelector.Decision decision = StrategySelector.shared().choose(count, passes);
+            metrics.strategy(Metrics.strategyLabel(decision.strategy(), decision.threads()));
+            output = ImageEngine.apply(input, passes,
+                metrics.meter(Metrics.Stage.FILTER, decision.strategy().create(WorkerPools.shared(), decision.threads())),
+                TileScheduler.rowBands(), Progress.NONE, PixelPool.shared());
+            StrategySelector.shared().record(decision, passes, System.nanoTime() - start);
+        } else {
+            metrics.strategy(Metrics.strategyLabel(strategyType, threads));
+            output = ImageEngine.apply(input, passes,
+                metrics.meter(Metrics.Stage.FILTER, strategyType.create(WorkerPools.shared(), threads)),
+                TileScheduler.rowBands(), Progress.NONE, PixelPool.shared());
+        }
+        filter.close();
+        double millis = (System.nanoTime() - start) / 1e6;
+        pixels.add(count);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, count)));
+        Metrics.Timer encode = metrics.time(Metrics.Stage.ENCODE);
+        ImageFiles.write(output, format, encoded, writeOptions, metrics.meter(Metrics.Stage.ENCODE, ioStrategy));
+        encode.close();
+        // Every path leases the output from the pool; the response only needs the encoded bytes
+        PixelPool.shared().release(output);
+        metrics.close();
+        exchange.getResponseHeaders().set("X-Filter-Millis", String.format(Locale.ROOT, "%.2f", millis));
+        exchange.getResponseHeaders().set("X-Batched", String.valueOf(batched));
+        respond(exchange, 200, format.equals("png") ? "image/png" : "image/jpeg", encoded.toByteArray());
+    }
+
+    private ImageBuffer awaitBatch(ImageBuffer input, List<ImageProcessor> passes) throws Exception {
+        try {
+            return batcher.submit(input, passes).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (CancellationException e) {
+            throw new IOException("Server is shutting down");
+        }
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            if (length != null && Long.parseLong(length) > config.maxBodyBytes()) {
+                throw new BadRequest(413, "Body is over the limit of " + config.maxBodyBytes() + " bytes");
+            }
+        } catch (NumberFormatException e) {
+            throw new BadRequest(400, "Bad Content-Length: " + length);
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(config.maxBodyBytes() + 1);
+            if (body.length > config.maxBodyBytes()) {
+                throw new BadRequest(413, "Body is over the limit of " + config.maxBodyBytes() + " bytes");
+            }
+            return body;
+        }
+    }
+
+    // Reading the unread body lets the connection be reused instead of reset under the client.
+    // It is read, not skipped: the server's body stream skips on the raw socket, past the body's end
+    private void discardBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] sink = new byte[8192];
+            long left = config.maxBodyBytes();
+            int n;
+            while (left > 0 && (n = in.read(sink, 0, (int) Math.min(sink.length, left))) > 0) {
+                left -= n;
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String json = String.format(Locale.ROOT,
+                "{\"accepted\":%d,\"rejected\":%d,\"failed\":%d,\"pending\":%d,\"maxPending\":%d,"
+                    + "\"batches\":%d,\"batchedRequests\":%d,\"megapixels\":%.1f}%n",
+                accepted.sum(), rejected.sum(), failed.sum(), config.maxPending() - admission.availablePermits(),
+                config.maxPending(), batcher.batches(), batcher.batchedRequests(), pixels.sum() / 1e6);
+            respond(exchange, 200, "application/json", json);
+        }
+    }
+
+    // Stage timings and worker busy time, as JSON or with ?format=csv
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Metrics.Snapshot snapshot = Metrics.shared().snapshot();
+            if ("csv".equalsIgnoreCase(query(exchange).get("format"))) {
+                respond(exchange, 200, "text/csv", snapshot.toCsv());
+            } else {
+                respond(exchange, 200, "application/json", snapshot.toJson());
+            }
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key.toLowerCase(Locale.ROOT), value);
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** A client error, answered with {@code status} and the message. */
+    private static final class BadRequest extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import processing.ExecutionStrategy;
+import processing.ImageBuffer;
+import processing.ImageEngine;
+import processing.ImageProcessor;
+import processing.PixelPool;
+import processing.Progress;
+import processing.SequentialStrategy;
+import processing.TileScheduler;
+
+/**
+ * Coalesces small requests that arrive close together into one run over the worker pool. Each
+ * image in a batch is filtered start to finish by a single worker, so a burst of thumbnails
+ * costs one fork-join instead of one per request, with no per-image band splitting.
+ * <p>
+ * A batch is closed when it holds {@code maxJobs} images or {@code window} has passed since its
+ * first image arrived; batches run one after another on the dispatcher thread.
+ */
+final class RequestBatcher implements AutoCloseable {
+    private record Job(ImageBuffer image, List<ImageProcessor> passes, CompletableFuture<ImageBuffer> result) {}
+
+    private static final ExecutionStrategy PER_IMAGE = new SequentialStrategy();
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final ExecutionStrategy strategy;
+    private final int maxJobs;
+    private final long windowNanos;
+    private final Thread dispatcher;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder jobs = new LongAdder();
+
+    RequestBatcher(ExecutionStrategy strategy, int maxJobs, long window, TimeUnit unit) {
+        this.strategy = strategy;
+        this.maxJobs = Math.max(1, maxJobs);
+        this.windowNanos = unit.toNanos(window);
+        this.dispatcher = new Thread(this::dispatch, "request-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    CompletableFuture<ImageBuffer> submit(ImageBuffer image, List<ImageProcessor> passes) {
+        CompletableFuture<ImageBuffer> result = new CompletableFuture<>();
+        queue.add(new Job(image, passes, result));
+        return result;
+    }
+
+    long batches() {
+        return batches.sum();
+    }
+
+    long batchedRequests() {
+        return jobs.sum();
+    }
+
+    private void dispatch() {
+        List<Job> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxJobs) {
+                    // Whatever is already waiting joins without delay
+                    Job next = queue.poll();
+                    if (next == null) {
+                        long left = deadline - System.nanoTime();
+                        if (left <= 0 || (next = queue.poll(left, TimeUnit.NANOSECONDS)) == null) break;
+                    }
+                    batch.add(next);
+                }
+                run(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            batch.forEach(job -> job.result().cancel(false));
+            queue.forEach(job -> job.result().cancel(false));
+        }
+    }
+
+    private void run(List<Job> batch) throws InterruptedException {
+        batches.increment();
+        jobs.add(batch.size());
+        try {
+            strategy.execute(batch.size(), 1, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    Job job = batch.get(i);
+                    try {
+                        job.result().complete(ImageEngine.apply(job.image(), job.passes(), PER_IMAGE,
+                            TileScheduler.rowBands(), Progress.NONE, PixelPool.shared()));
+                    } catch (Exception e) {
+                        job.result().completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (ExecutionException e) {
+            batch.forEach(job -> job.result().completeExceptionally(e.getCause()));
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.interrupt();
+    }
+}
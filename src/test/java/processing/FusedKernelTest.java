@@ -0,0 +1,54 @@
+package processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * A fused chain must produce exactly the pixels of its stages run one full image at a time,
+ * whatever the strategy and tiling: window edges inside the image must never be treated as
+ * image edges. Thin images and images smaller than the chain's halo clamp at every border.
+ */
+class FusedKernelTest {
+    private static final int[][] SIZES = {{1, 1}, {1, 57}, {57, 1}, {2, 3}, {5, 4}, {3, 90}, {130, 97}, {301, 64}};
+    private static final int[] BLUR_RADII = {1, 3, 7, 40};
+    private static final TileScheduler[] SCHEDULERS = {
+        TileScheduler.rowBands(), TileScheduler.tiles(13, 7), TileScheduler.tiles(64, 64), TileScheduler.autoTiles()};
+
+    @ParameterizedTest
+    @EnumSource(KernelMode.class)
+    void chainMatchesSeparatePasses(KernelMode mode) throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        ExecutionStrategy reference = new SequentialStrategy();
+        for (int[] size : SIZES) {
+            ImageBuffer input = randomImage(random, size[0], size[1]);
+            for (int radius : BLUR_RADII) {
+                FilterChain chain = FilterChain.parse("grayscale,blur:" + radius + ",edge_detection");
+                ImageBuffer expected = input;
+                for (FilterChain.Stage stage : chain.stages()) {
+                    expected = ImageEngine.apply(expected, Kernels.passes(stage.filter(), stage.options(), mode),
+                        reference, TileScheduler.rowBands());
+                }
+                for (StrategyType type : StrategyType.values()) {
+                    ExecutionStrategy strategy = type.create(3);
+                    for (TileScheduler scheduler : SCHEDULERS) {
+                        ImageBuffer actual = ImageEngine.apply(input, chain.passes(mode), strategy, scheduler);
+                        assertArrayEquals(expected.getPixels(), actual.getPixels(),
+                            chain + " " + mode + " " + type + " " + scheduler + " on " + size[0] + "x" + size[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static ImageBuffer randomImage(SplittableRandom random, int width, int height) {
+        ImageBuffer image = ImageBuffer.allocate(width, height);
+        int[] pixels = image.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,86 @@
+package processing;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The SIMD kernels must match the scalar ones pixel for pixel. The fixed sizes give rows
+ * vector tails, and small odd-sized tiles exercise region edges; the random cases vary sizes,
+ * radii and tilings on a parallel strategy.
+ */
+class SimdKernelTest {
+    private static final int[][] SIZES = {{1, 1}, {2, 3}, {3, 2}, {17, 5}, {33, 40}, {257, 31}, {1000, 3}, {640, 480}};
+    private static final int[] BLUR_RADII = {1, 2, 7, 100};
+
+    @BeforeAll
+    static void simdAvailable() {
+        assertTrue(Kernels.isSimdAvailable(), "SIMD kernels unavailable (run with --add-modules jdk.incubator.vector)");
+    }
+
+    @Test
+    void fixedCasesMatchScalar() throws Exception {
+        SplittableRandom random = new SplittableRandom(42);
+        ExecutionStrategy strategy = new SequentialStrategy();
+        TileScheduler[] schedulers = {TileScheduler.rowBands(), TileScheduler.tiles(13, 7)};
+        for (int[] size : SIZES) {
+            ImageBuffer input = randomImage(random, size[0], size[1]);
+            for (FilterType filter : FilterType.values()) {
+                int[] radii = filter == FilterType.BLUR ? BLUR_RADII : new int[] {FilterOptions.DEFAULT.blurRadius()};
+                for (int radius : radii) {
+                    FilterOptions options = new FilterOptions(radius);
+                    for (TileScheduler scheduler : schedulers) {
+                        assertSame(input, Kernels.passes(filter, options, KernelMode.SCALAR),
+                            Kernels.passes(filter, options, KernelMode.SIMD), strategy, scheduler,
+                            filter + " r=" + radius + " " + scheduler);
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4, 5, 6, 7, 8})
+    void randomCasesMatchScalar(long seed) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        ExecutionStrategy strategy = StrategyType.FORK_JOIN.create(3);
+        for (int i = 0; i < 4; i++) {
+            ImageBuffer input = randomImage(random, 1 + random.nextInt(700), 1 + random.nextInt(300));
+            TileScheduler scheduler = random.nextBoolean()
+                ? TileScheduler.rowBands()
+                : TileScheduler.tiles(1 + random.nextInt(100), 1 + random.nextInt(100));
+            FilterOptions options = new FilterOptions(1 + random.nextInt(random.nextBoolean() ? 8 : FilterOptions.MAX_BLUR_RADIUS));
+            for (FilterType filter : FilterType.values()) {
+                assertSame(input, Kernels.passes(filter, options, KernelMode.SCALAR),
+                    Kernels.passes(filter, options, KernelMode.SIMD), strategy, scheduler,
+                    filter + " r=" + options.blurRadius() + " " + scheduler);
+            }
+            FilterChain chain = FilterChain.parse("grayscale,blur:" + options.blurRadius() + ",edge_detection");
+            assertSame(input, chain.passes(KernelMode.SCALAR), chain.passes(KernelMode.SIMD), strategy, scheduler,
+                chain + " " + scheduler);
+        }
+    }
+
+    private static void assertSame(ImageBuffer input, List<ImageProcessor> scalar, List<ImageProcessor> simd,
+                                   ExecutionStrategy strategy, TileScheduler scheduler, String description) throws Exception {
+        ImageBuffer expected = ImageEngine.apply(input, scalar, strategy, scheduler);
+        ImageBuffer actual = ImageEngine.apply(input, simd, strategy, scheduler);
+        assertArrayEquals(expected.getPixels(), actual.getPixels(),
+            () -> description + " on " + input.getWidth() + "x" + input.getHeight());
+    }
+
+    private static ImageBuffer randomImage(SplittableRandom random, int width, int height) {
+        ImageBuffer image = ImageBuffer.allocate(width, height);
+        int[] pixels = image.getPixels();
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return image;
+    }
+}